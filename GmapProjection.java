@@ -0,0 +1,239 @@
+import java.lang.Math;
+
+/**
+GmapProjection is a 64-bit fixed-point Web Mercator projection, for bulk point projection and zoom levels past GmapUtils.MAX_ZOOM.<p>
+<p>
+World coordinates are longs in [0, 2^WORLD_BITS), the whole map at fixed-point scale.<p>
+Pyramid (absolute) pixels at any zoom are a right shift of the world coordinate, so no Math.pow(2,zoom) is needed,<p>
+and pixel values stay exact up to MAX_ZOOM (TILE_SIZE * 2^30 needs 38 bits).<p>
+<p>
+The latitude transform y = 0.5 - ln(tan(pi/4 + lat/2)) / (2*pi) has two implementations:
+	- Exact, with Math.log and Math.sin as GmapUtils.latlon2abspx(...) uses.
+	- Fast, cubic Hermite interpolation of a TABLE_SIZE table of exact values and slopes.
+	  The table's worst error is measured when the class loads (FAST_ERR), and the fast path is only
+	  used for zoom levels where that error is below half a pixel, see fastUsable(zoom).
+Latitudes are clamped to +-MAX_LAT_DEG, the usual Web Mercator limit.<p>
+GmapRender finds its zoom, tiles and layer offsets here, so it can render past GmapUtils.MAX_ZOOM, see GmapRender.setMaxZoom(...).<p>
+*/
+public class GmapProjection {
+	/**Maximum supported zoom level for the 64-bit pixel functions.*/
+	public static final int    MAX_ZOOM    = 30;
+	/**Fixed-point bits of the world coordinates.*/
+	public static final int    WORLD_BITS  = 62;
+	/**Latitude (degrees) where Web Mercator y reaches the map edge.*/
+	public static final double MAX_LAT_DEG = Math.toDegrees( Math.atan( Math.sinh( Math.PI ) ) );
+	/**Number of segments in the fast latitude table.*/
+	public static final int    TABLE_SIZE  = 8192;
+
+	private static final double   WORLD_SCALE = 0x1p62;
+	private static final long     WORLD_MASK  = (1L << WORLD_BITS) - 1;
+	private static final double   LON_SCALE   = WORLD_SCALE / 360.0;
+	private static final double   LAT_STEP    = 2.0 * MAX_LAT_DEG / TABLE_SIZE;
+	private static final double   LAT_STEP_INV= 1.0 / LAT_STEP;
+	private static final double[] TABLE_Y     = new double[TABLE_SIZE + 1]; //y(lat) at each table latitude
+	private static final double[] TABLE_DY    = new double[TABLE_SIZE + 1]; //dy/dlat scaled by LAT_STEP
+	/**Worst measured error of the fast latitude transform, in normalized [0,1) map units, doubled as a safety margin.*/
+	public static final double    FAST_ERR;
+
+	static {
+		for (int i = 0; i<=TABLE_SIZE; i+=1) {
+			double lat   = -MAX_LAT_DEG + i*LAT_STEP;
+			TABLE_Y[i]   = exactY( lat );
+			TABLE_DY[i]  = -LAT_STEP / (360.0 * Math.cos( Math.toRadians( lat ) ));
+		}
+		double err = 0.0;
+		for (int i = 0; i<TABLE_SIZE; i+=1) {
+			for (int k = 1; k<8; k+=1) {
+				double lat = -MAX_LAT_DEG + (i + k/8.0)*LAT_STEP;
+				err        = Math.max( err, Math.abs( fastY( lat ) - exactY( lat ) ) );
+			}
+		}
+		FAST_ERR = 2.0 * err;
+	}
+
+	/**
+	* exactY(double lat) { return (double)y_normalized; }
+	* <p>
+	* Notes:<p>
+	* 	Mercator y of a latitude in degrees, as a fraction of the map height (0 = north edge, 1 = south edge).<p>
+	*/
+	public static double exactY(double lat) {
+		double sin = Math.sin( Math.toRadians( _clampLat( lat ) ) );
+		return( 0.5 - 0.25 * Math.log( (1.0+sin) / (1.0-sin) ) / Math.PI );
+	}
+
+	/**
+	* fastY(double lat) { return (double)y_normalized; }
+	* <p>
+	* Notes:<p>
+	* 	Table approximation of exactY(lat), within FAST_ERR of it.<p>
+	*/
+	public static double fastY(double lat) {
+		double t  = (_clampLat( lat ) + MAX_LAT_DEG) * LAT_STEP_INV;
+		int    i  = Math.min( (int)t, TABLE_SIZE-1 );
+		double f  = t - i;
+		double f2 = f*f;
+		double f3 = f2*f;
+		return( (2*f3 - 3*f2 + 1)*TABLE_Y[i] + (f3 - 2*f2 + f)*TABLE_DY[i] + (-2*f3 + 3*f2)*TABLE_Y[i+1] + (f3 - f2)*TABLE_DY[i+1] );
+	}
+
+	/**
+	* fastUsable(int zoom) { return boolean; }
+	* <p>
+	* Notes:<p>
+	* 	True if the fast latitude transform is within half a pixel at this zoom.<p>
+	*/
+	public static boolean fastUsable(int zoom) {
+		return( FAST_ERR * (double)maxAbspx(zoom) < 0.5 );
+	}
+
+	/**
+	* maxAbspx(int zoom) { return (long)pixel_dimension_max; }
+	* <p>
+	* Notes:<p>
+	* 	64-bit GmapUtils.maxAbspx(zoom), valid up to MAX_ZOOM.<p>
+	*/
+	public static long maxAbspx(int zoom) {
+		if ((zoom > MAX_ZOOM)||(zoom<0)) { throw new IllegalArgumentException("ERR -- GmapProjection.maxAbspx -- Invalid Zoom Level"); }
+		return( ((long)GmapUtils.TILE_SIZE) << zoom );
+	}
+
+	/**
+	* latlon2world(double lat, double lon, boolean fast) { return new long[] {wx,wy}; }
+	* <p>
+	* Notes:<p>
+	* 	Converts lat-long to fixed-point world coordinates, longitude wraps around the antimeridian.<p>
+	*/
+	public static long[] latlon2world(double lat, double lon, boolean fast) {
+		return( new long[] { _worldX( lon ), _worldY( fast ? fastY( lat ) : exactY( lat ) ) } );
+	}
+
+	/**
+	* latlon2abspx(int zoom, double lat, double lon) { return new long[] {px,py}; }
+	* <p>
+	* Notes:<p>
+	* 	64-bit GmapUtils.latlon2abspx(...), exact transform, valid up to MAX_ZOOM.<p>
+	*/
+	public static long[] latlon2abspx(int zoom, double lat, double lon) {
+		int shift = _shift( zoom );
+		return( new long[] { _worldX( lon ) >> shift, _worldY( exactY( lat ) ) >> shift } );
+	}
+
+	/**
+	* latlon2abspx(int zoom, double[] lat, double[] lon, long[] out_x, long[] out_y) {return;}
+	* <p>
+	* Notes:<p>
+	* 	Bulk projection of a track into pyramid pixels.<p>
+	* 	Uses the fast transform when fastUsable(zoom), otherwise the exact one, so results are within half a pixel of exact.<p>
+	*/
+	public static void latlon2abspx(int zoom, double[] lat, double[] lon, long[] out_x, long[] out_y) {
+		if ((lat.length!=lon.length)||(out_x.length<lat.length)||(out_y.length<lat.length)) {
+			throw new IllegalArgumentException("ERR -- GmapProjection.latlon2abspx -- Array length mismatch");
+		}
+		int     shift = _shift( zoom );
+		boolean fast  = fastUsable( zoom );
+		for (int i = 0; i<lat.length; i+=1) {
+			out_x[i] = _worldX( lon[i] ) >> shift;
+			out_y[i] = _worldY( fast ? fastY( lat[i] ) : exactY( lat[i] ) ) >> shift;
+		}
+	}
+
+	/**
+	* abspx2latlon(int zoom, long x, long y) { return new double[] {lat, lon}; }
+	* <p>
+	* Notes:<p>
+	* 	64-bit GmapUtils.abspx2latlon(...), lat-long of the pixel's top-left corner.<p>
+	* 	x wraps around the map width, y is clamped to the map height.<p>
+	*/
+	public static double[] abspx2latlon(int zoom, long x, long y) {
+		long   max = maxAbspx( zoom );
+		double nx  = ((double)Math.floorMod( x, max )) / (double)max;
+		double ny  = ((double)Math.max( 0, Math.min( y, max ) )) / (double)max;
+		double lon = nx * 360.0 - 180.0;
+		double lat = Math.toDegrees( Math.atan( Math.sinh( Math.PI * (1.0 - 2.0*ny) ) ) );
+		return( new double[] {lat,lon} );
+	}
+
+	/**
+	* abspxBounds(int zoom, double[] coord_a, double[] coord_b) { return new long[]{min_x,min_y,max_x,max_y,count_x,count_y}; }
+	* <p>
+	* Notes:<p>
+	* 	64-bit GmapUtils.abspxBounds(...), exact transform, valid up to MAX_ZOOM.<p>
+	*/
+	public static long[] abspxBounds(int zoom, double[] coord_a, double[] coord_b) {
+		long[] abspx_a = latlon2abspx( zoom, coord_a[0], coord_a[1] );
+		long[] abspx_b = latlon2abspx( zoom, coord_b[0], coord_b[1] );
+		long[] min     = { Math.min(abspx_a[0],abspx_b[0]), Math.min(abspx_a[1],abspx_b[1]) };
+		long[] max     = { Math.max(abspx_a[0],abspx_b[0]), Math.max(abspx_a[1],abspx_b[1]) };
+		return( new long[] { min[0],min[1],max[0],max[1], max[0]-min[0]+1, max[1]-min[1]+1 } ); //inclusive range
+	}
+
+	/**
+	* tileBounds(int zoom, double[] coord_a, double[] coord_b) { return new int[]{min_x,min_y,max_x,max_y,count_x,count_y}; }
+	* <p>
+	* Notes:<p>
+	* 	GmapUtils.tileBounds(...) valid up to MAX_ZOOM, tile indexes fit an int up to zoom 30.<p>
+	*/
+	public static int[] tileBounds(int zoom, double[] coord_a, double[] coord_b) {
+		long[] px = abspxBounds( zoom, coord_a, coord_b );
+		int[]  t  = new int[6];
+		for (int i = 0; i<4; i+=1) { t[i] = (int)(px[i] / GmapUtils.TILE_SIZE); }
+		t[4] = t[2]-t[0]+1;
+		t[5] = t[3]-t[1]+1;
+		return( t );
+	}
+
+	/**
+	* zoomFromCoords(int[] res_box, double[] coord_a, double[] coord_b, double[] coord_center, int max_zoom) { return (int)zoom_level; }
+	* <p>
+	* Notes:<p>
+	* 	GmapUtils.zoomFromCoords(...) with 64-bit pixels, searching zoom levels up to max_zoom (at most MAX_ZOOM).<p>
+	*/
+	public static int zoomFromCoords(int[] res_box, double[] coord_a, double[] coord_b, double[] coord_center, int max_zoom) {
+		if ((res_box[0]<0)||(res_box[1]<0)) { throw new ArithmeticException("ERR -- GmapProjection.zoomFromCoords -- Bounding Box Has Negitive Size"); }
+		maxAbspx( max_zoom ); //range check
+		int     zoom    = 0;
+		long[]  size_px = {0,0};
+		boolean fits    = false;
+		while ((size_px[0]<res_box[0]) || (size_px[1]<res_box[1]) || (fits!=true)) {
+			long[] pixel_bound = abspxBounds( zoom, coord_a, coord_b );
+			int[]  tile_bound  = tileBounds( zoom, coord_a, coord_b );
+			size_px[0]         = ((long)tile_bound[4])*GmapUtils.TILE_SIZE;
+			size_px[1]         = ((long)tile_bound[5])*GmapUtils.TILE_SIZE; //if downloaded this would be the composite image size
+			long[] center_px   = latlon2abspx( zoom, coord_center[0], coord_center[1] );
+			center_px[0]       = center_px[0] - pixel_bound[0];
+			center_px[1]       = center_px[1] - pixel_bound[1]; //composite image (0,0) domain
+			long[] fit_px      = {2*center_px[0] - res_box[0]/2, 2*center_px[1] - res_box[1]/2}; //as GmapUtils: center plus its offset from the res_box origin
+			if ((size_px[0]>fit_px[0])&&(size_px[1]>fit_px[1])) { fits = true; }
+			zoom += 1;
+			if (zoom>max_zoom) { break; }
+		}
+		return( zoom-1 );
+	}
+
+	//Helpers ==========
+	private static double _clampLat(double lat) {
+		return( Math.max( -MAX_LAT_DEG, Math.min( MAX_LAT_DEG, lat ) ) );
+	}
+
+	private static long _worldX(double lon) {
+		return( ((long)( (lon + 180.0) * LON_SCALE )) & WORLD_MASK );
+	}
+
+	private static long _worldY(double y) {
+		return( Math.max( 0L, Math.min( WORLD_MASK, (long)( y * WORLD_SCALE ) ) ) );
+	}
+
+	/**Right shift from world coordinates to pixels at zoom, TILE_SIZE must be a power of two.*/
+	private static int _shift(int zoom) {
+		maxAbspx( zoom ); //range check
+		int tile_bits = Integer.numberOfTrailingZeros( GmapUtils.TILE_SIZE );
+		if ((1 << tile_bits) != GmapUtils.TILE_SIZE) { throw new ArithmeticException("ERR -- GmapProjection._shift -- TILE_SIZE is not a power of two"); }
+		return( WORLD_BITS - tile_bits - zoom );
+	}
+
+	public static void main(String[] args) {
+		System.out.println("MSG -- GmapProjection -- No tests implimented here.");
+		return;
+	}
+}
@@ -1,7 +1,33 @@
 import java.lang.Math;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
 import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.awt.geom.AffineTransform;
@@ -23,14 +49,16 @@ public class GmapRender {
 	//Externally Applied Settings ==========
 	private int[]                _res          = {0,0};
 	private ArrayList<double[]>  _coords_list;
-	private double               _angle        = 0;               //Angle to rotate by
+	private volatile double      _angle        = 0;               //Angle to rotate by
 	private int[]                _compass_px   = {0,0,0,0};       //{min_x,min_y,size_wid,size_hei}
 	private String               _compass_icon = new String("");  //if len(...)>0 { useCompassIcon(); }
 	private String               _temp_path    = new String("."); //$(pwd) default image download folder
-	//private _____               _map_sources  = {};
-	//private _____               _map_order    = {};
+	private HashMap<Integer,TileSource> _map_sources = new HashMap<>();
+	private ArrayList<Integer>   _map_order    = new ArrayList<>();    //layer draw order, bottom first
+	private String               _user_agent   = new String("Mozilla/5.0");
 	private int                 _threads_max   = 1;
 	private int                 _retry_after   = 900; //seconds
+	private int                 _max_zoom      = GmapUtils.MAX_ZOOM; //deepest zoom level requested from the sources
 	//Internal State Values ==========
 	/**Tile zoom level currently used for layers.*/
 	private int                 _zoom          = 0;
@@ -40,11 +68,82 @@ public class GmapRender {
     private double              _radius_km         = 1.0;
     private double              _radius_km_default = 1.0;
     private BufferedImage       _image_temp;
+	/**View generation, bumped whenever the coordinates change (or the render is cancelled) so queued jobs can tell they are stale.*/
+	private final AtomicLong    _generation    = new AtomicLong();
+	/**Tile range of the current view {tile_x_min,tile_x_max,tile_y_min,tile_y_max,zoom}, or null until render() has found it.*/
+	private volatile int[]      _view_tiles;
+	/**Completed when the generation moves on, wakes a render waiting on downloads for the old view.*/
+	private CompletableFuture<Void> _view_changed = new CompletableFuture<>();
+	/**Download threads for this render, jobs are taken newest generation first, then nearest to the view center.*/
+	private ThreadPoolExecutor  _tile_pool;
+	/**Layer raster around the current view, per source uid, so a pan only draws the newly exposed tiles.*/
+	private HashMap<Integer,TileMosaic> _mosaics        = new HashMap<>();
+	/**Source and temp folder each mosaic was drawn from, a mosaic is dropped when they change.*/
+	private HashMap<Integer,TileSource> _mosaic_sources = new HashMap<>();
+	private String                      _mosaic_path    = "";
+	/**Keep mosaics between renders, off for one-shot renderAsync(...) renders so their rasters go back to the pool.*/
+	private boolean             _keep_mosaics  = true;
+	/**Held by render(), one render at a time may use the mosaics.*/
+	private final Object        _render_lock   = new Object();
+	/**Set by _cancel() when a renderAsync(...) future is cancelled or times out, this one-shot render stops at the next layer.*/
+	private volatile boolean    _cancelled     = false;
+	/**This render's jobs handed to the tile pool and not yet taken by a thread, _cancel() takes them back out.*/
+	private final Set<TileJob>  _queued        = ConcurrentHashMap.newKeySet();
+	/**Orders this render's downloads against other renders on a shared tile pool, generations are only comparable within one render.*/
+	private final long          _render_id     = _render_seq.getAndIncrement();
+	//Shared State Values ==========
+	/**Maximum bytes of decoded tile rasters kept by content key, also held to an eighth of the RasterBudget limit.*/
+	public static long DECODED_MAX_BYTES = 64L << 20;
+	/**Decoded tiles in flight by content key, shared by every GmapRender so overlapping renders decode each tile once.*/
+	private static final TileFlight<BufferedImage> _decode_flight = new TileFlight<>(5000);
+	/**Tile downloads in flight, shared by every GmapRender so overlapping renders download each tile once.*/
+	private static final TileFlight<String>        _download_flight = new TileFlight<>(0);
+	/**Recently decoded rasters by content key (least recently used first), identical tiles share one raster.*/
+	private static final LinkedHashMap<String,BufferedImage> _decoded = new LinkedHashMap<>(16, 0.75f, true);
+	/**Bytes of the rasters in _decoded, counted by RasterBudget, guarded by _decoded.*/
+	private static long                                      _decoded_bytes = 0;
+	/**Tiles drawn into layers by every GmapRender, see getTilesMerged().*/
+	private static final AtomicLong                _tiles_merged    = new AtomicLong();
+	/**Render numbering, jobs of an earlier render are taken first on the shared async tile pool.*/
+	private static final AtomicLong                _render_seq      = new AtomicLong();
+	/**Queue order tie-break, so equally ranked jobs run first-in first-out.*/
+	private static final AtomicLong                _job_seq         = new AtomicLong();
+	/**renderAsync(...) renders drawing at once, read when the shared pools are first used, downloads are waited for off these threads.*/
+	public static int RENDER_THREADS     = Math.max( 1, Runtime.getRuntime().availableProcessors() );
+	/**renderAsync(...) stages waiting for a render thread (finding tiles, then drawing them), further requests are rejected.*/
+	public static int RENDER_QUEUE_MAX   = 64;
+	/**Tile download threads shared by every renderAsync(...) render.*/
+	public static int ASYNC_TILE_THREADS = 8;
+	private static ThreadPoolExecutor          _render_pool;
+	private static ThreadPoolExecutor          _async_tile_pool;
+	private static ScheduledThreadPoolExecutor _deadline_timer;
+	private static final ThreadFactory         _daemon_factory  = r -> { Thread t = new Thread(r); t.setDaemon(true); return(t); };
+	/**Milliseconds a render waits for RasterBudget room before it is refused, 0 refuses at once.*/
+	public static long RASTER_WAIT_MS    = 30000;
 	
 	//Constructor ==========
 	public GmapRender() {
 	}
 	
+	/**
+	* new GmapRender(RenderRequest req)
+	* <p>
+	* Notes:<p>
+	* 	Internal one-shot render for renderAsync(...), downloads run on the shared async tile pool.<p>
+	*/
+	private GmapRender(RenderRequest req) {
+		this.setResolution( req.getWidth(), req.getHeight() );
+		this.setTempDir( req.getTempDir() );
+		this.setImageSources( req.getSources() );
+		this.setCoordList( req.getCoords(), req.getRadiusKm() );
+		this.setHeading( req.getHeading() );
+		if (req.getCompassIcon().length()>0) { this.setCompassOverlay( req.getCompassSize(), req.getCompassPosition(), req.getCompassIcon() ); }
+		this.setRetryPeriod( req.getRetryPeriod() );
+		this.setUserAgent( req.getUserAgent() );
+		this._tile_pool    = _getAsyncPools()[1];
+		this._keep_mosaics = false;
+	}
+	
 	//Setters ==========
 	/**
 	* this.setResolution(int x, int y) {return;}
@@ -60,17 +159,25 @@ public class GmapRender {
 	* Notes:<p>
 	* 	Define region to render by Arraylist of double[]{lat,lon} pairs to include within the region.<p>
     *   Also sets the internal values: radius_km_default, coord_center, coord_bounds.<p>
+    *   May be called from another thread while render() runs, the new view is published all at once,<p>
+    *   and a render() waiting on downloads for the old view stops waiting so the next one can queue the new view.<p>
+    *   Queued downloads for the old view are dropped when they run, unless the new view's render() has found them still in view,<p>
+    *   those are taken after the new view's own downloads.<p>
 	*/
 	public void setCoordList(ArrayList<double[]> coord_list, double radius_km_default) {
-        this._radius_km_default = radius_km_default;
-		this._coords_list       = new ArrayList<>(coord_list); //object copy, not reference
-        this._coord_center      = GmapUtils.latlonCenter( this._coords_list );
-        if (this._coords_list.size()>1) {
-            this._radius_km     = GmapUtils.latlonRadius( this._coord_center, this._coords_list, GmapUtils.EARTH_RADIUS_KM );
-        } else {
-            this._radius_km     = this._radius_km_default;
-        }
-        this._coord_bounds      = GmapUtils.boundingCoordinates( this._coord_center, this._radius_km, GmapUtils.EARTH_RADIUS_KM );
+		ArrayList<double[]> coords = new ArrayList<>(coord_list); //object copy, not reference
+		double[]            center = GmapUtils.latlonCenter( coords );
+		double              radius = (coords.size()>1) ? GmapUtils.latlonRadius( center, coords, GmapUtils.EARTH_RADIUS_KM ) : radius_km_default;
+		ArrayList<double[]> bounds = GmapUtils.boundingCoordinates( center, radius, GmapUtils.EARTH_RADIUS_KM );
+		synchronized (this) {
+			this._radius_km_default = radius_km_default;
+			this._coords_list       = coords;
+			this._coord_center      = center;
+			this._radius_km         = radius;
+			this._coord_bounds      = bounds;
+			this._view_tiles        = null; //found by the next render(), the resolution may still change
+			this._nextGeneration();
+		}
 	}
 	
 	/**
@@ -79,6 +186,7 @@ public class GmapRender {
 	* Notes:<p>
 	* 	Sets angle (degrees) to rotate north-facing (top=north) orientation for formatted output.<p>
 	* 	Rotation direction is defined by the image rotation library, and is direction geometric (angle>0 is rotation ccw) definition.<p>
+	* 	The heading does not change which tiles are needed, so downloads in progress are kept.<p>
 	*/
 	public void setHeading(double angle) { this._angle = angle; }
 	
@@ -91,10 +199,10 @@ public class GmapRender {
 	*/
 	public void setCompassOverlay(int[] size, int[] position, String icon_file) {
 		this._compass_icon  = new String(icon_file);
-		this._compass_px[0] = size[0];
-		this._compass_px[1] = size[1];
-		this._compass_px[2] = position[0];
-		this._compass_px[3] = position[1];
+		this._compass_px[0] = position[0];
+		this._compass_px[1] = position[1];
+		this._compass_px[2] = size[0];
+		this._compass_px[3] = size[1];
 	}
 	
 	public void setTempDir(String path) {
@@ -102,16 +210,37 @@ public class GmapRender {
 		else                   { this._temp_path = new String(path); }
 	}
 	
-	public void setImageSources() {
+	/**
+	* this.setImageSources(ArrayList<TileSource> sources) {return;}
+	* <p>
+	* Notes:<p>
+	* 	Replaces the map sources to render, sources are drawn in list order (first source is the bottom layer).<p>
+	*/
+	public void setImageSources(ArrayList<TileSource> sources) {
+		this._map_sources.clear();
+		this._map_order.clear();
+		for (TileSource src : sources) {
+			this._map_sources.put( src.getUid(), src );
+			this._map_order.add( src.getUid() );
+		}
 	}
 	
+	public void setUserAgent(String useragent) { this._user_agent = new String(useragent); }
+	
 	/**
 	* this.setThreads(int max_threads) {return;}
 	* <p>
 	* Notes:<p>
 	* 	Specifies the maximum number of threads that may be spawned at one time to handle tile downloading.<p>
 	*/
-	public void setThreads(int max_threads) { if (max_threads>0) { this._threads_max = max_threads; }}
+	public synchronized void setThreads(int max_threads) {
+		if (max_threads<=0) { return; }
+		this._threads_max = max_threads;
+		if (this._tile_pool != null) {
+			if (max_threads > this._tile_pool.getMaximumPoolSize()) { this._tile_pool.setMaximumPoolSize( max_threads ); this._tile_pool.setCorePoolSize( max_threads ); }
+			else                                                    { this._tile_pool.setCorePoolSize( max_threads ); this._tile_pool.setMaximumPoolSize( max_threads ); }
+		}
+	}
 	
 	/**
 	* this.setRetryPeriod(int retry_after) {return;}
@@ -123,7 +252,299 @@ public class GmapRender {
 	*/
 	public void setRetryPeriod(int retry_after) { if (retry_after>=0) { this._retry_after = retry_after; }}
 	
+	/**
+	* this.setMaxZoom(int zoom) {return;}
+	* <p>
+	* Notes:<p>
+	* 	Deepest zoom level render() may pick (default GmapUtils.MAX_ZOOM), up to GmapProjection.MAX_ZOOM for sources that serve it.<p>
+	* 	Applies from the next render().<p>
+	*/
+	public void setMaxZoom(int zoom) {
+		if ((zoom<0)||(zoom>GmapProjection.MAX_ZOOM)) { throw new IllegalArgumentException("ERR -- GmapRender.setMaxZoom -- Zoom must be within [0," + GmapProjection.MAX_ZOOM + "]."); }
+		this._max_zoom = zoom;
+	}
+	
 	//Getters ==========
+	/**
+	* this.render() { return BufferedImage; }
+	* <p>
+	* Notes:<p>
+	* 	Runs the full pipeline for the current settings:<p>
+	* 	find tiles, download missing tiles, merge each source layer, orient, then overlay the compass.<p>
+	* 	The result is also kept for update().<p>
+	* 	If setCoordList(...) is called while tiles are downloading, the render stops waiting and returns<p>
+	* 	the previous update() image, render() again for the new view. Without a previous image it renders the new view.<p>
+	* 	The view and heading are read once when render() starts, later setter calls apply to the next render().<p>
+	* 	Repeat renders are incremental: each source keeps a TileMosaic raster, so a pan only downloads, decodes<p>
+	* 	and draws the newly exposed tiles, and a heading change only redoes the rotation.<p>
+	* 	Calls from several threads run one at a time.<p>
+	* 	Once every layer's tiles are downloaded, the render's raster bytes are reserved from RasterBudget,<p>
+	* 	waiting up to RASTER_WAIT_MS for room, then RejectedExecutionException is thrown.<p>
+	* 	Mosaics kept for re-rendering stay counted by RasterBudget until release(), or the source, temp folder or zoom range drops them.<p>
+	*/
+	public BufferedImage render() {
+		if ((this._res[0]<=0)||(this._res[1]<=0)) { throw new IllegalStateException("ERR -- GmapRender.render -- Resolution not set."); }
+		if (this._coords_list == null)            { throw new IllegalStateException("ERR -- GmapRender.render -- Coordinates not set."); }
+		if (this._map_order.size() <= 0)          { throw new IllegalStateException("ERR -- GmapRender.render -- Image sources not set."); }
+		synchronized (this._render_lock) {
+			while (true) {
+				BufferedImage img = this._render();
+				if (img != null) { return( img ); } //view changed before a first image, render the new view
+			}
+		}
+	}
+	
+	/**One pass of render(), returns the previous update() image (null before the first) if the view changed while downloading.*/
+	private BufferedImage _render() {
+		RenderPass pass = this._startPass();
+		if (!this._awaitTiles( pass )) { return( this._image_temp ); }
+		return( this._finishPass( pass ) );
+	}
+	
+	/**The view one render pass was started for, and the downloads it queued.*/
+	private static final class RenderPass {
+		long                     gen;
+		double[]                 center;
+		int[]                    tiles;
+		double                   angle;
+		CompletableFuture<Void>  changed;
+		ArrayList<TileJob>       jobs    = new ArrayList<>();
+	}
+	
+	/**
+	* this._startPass() { return RenderPass; }
+	* <p>
+	* Notes:<p>
+	* 	Finds the tiles of the current view and queues the missing ones for every layer, without waiting on them.<p>
+	* 	No raster memory is held while the downloads run, see _finishPass(...).<p>
+	*/
+	private RenderPass _startPass() {
+		RenderPass          pass   = new RenderPass();
+		ArrayList<double[]> bounds;
+		synchronized (this) { pass.gen = this._generation.get(); pass.center = this._coord_center; bounds = this._coord_bounds; pass.changed = this._view_changed; }
+		pass.angle = this._angle;
+		pass.tiles = this._findTiles( pass.center, bounds );
+		int[]               tiles  = pass.tiles;
+		synchronized (this) { if (pass.gen == this._generation.get()) { this._zoom = tiles[4]; this._view_tiles = tiles; } }
+		this._pruneMosaics();
+		for (int uid : this._map_order) {
+			if (this._cancelled) { throw new CancellationException("ERR -- GmapRender.render -- Render cancelled."); }
+			TileMosaic mosaic = this._getMosaic( uid );
+			boolean    kept   = mosaic.bytesToFit( tiles[0],tiles[1],tiles[2],tiles[3],tiles[4] ) == 0; //drawn tiles survive moveTo(...)
+			this._queueTiles( uid, kept ? mosaic : null, tiles, pass.gen, pass.center, pass.jobs );
+		}
+		return( pass );
+	}
+	
+	/**
+	* this._awaitTiles(RenderPass pass) { return (boolean)current; }
+	* <p>
+	* Notes:<p>
+	* 	Waits for the pass's downloads, false at once if the view moved on, the remaining jobs stay queued behind the new view's.<p>
+	*/
+	private boolean _awaitTiles(RenderPass pass) {
+		try {
+			CompletableFuture.anyOf( _downloaded( pass ), pass.changed ).get();
+		} catch (ExecutionException e) {
+			throw new CompletionException( e.getCause() ); //not reached, _downloaded(...) never fails
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("ERR -- GmapRender.render -- Interrupted while downloading.");
+		}
+		return( !pass.changed.isDone() );
+	}
+	
+	/**
+	* GmapRender::_downloaded(RenderPass pass) { return CompletableFuture<Void>; }
+	* <p>
+	* Notes:<p>
+	* 	Completes once all of the pass's downloads have finished, failed, or been dropped as obsolete, it never fails.<p>
+	* 	Failed tiles are logged and left missing.<p>
+	*/
+	private static CompletableFuture<Void> _downloaded(RenderPass pass) {
+		CompletableFuture<?>[] each = new CompletableFuture<?>[pass.jobs.size()];
+		for (int i = 0; i<each.length; i+=1) {
+			each[i] = pass.jobs.get(i).done.handle( (key, e) -> {
+				if (e != null) { System.err.println("ERR -- GmapRender._downloaded -- Download failed  " + e.getMessage()); }
+				return( null );
+			});
+		}
+		return( CompletableFuture.allOf( each ) );
+	}
+	
+	/**
+	* this._finishPass(RenderPass pass) { return BufferedImage; }
+	* <p>
+	* Notes:<p>
+	* 	Reserves raster memory, draws the downloaded tiles into the mosaics and merges the oriented layers.<p>
+	*/
+	private BufferedImage _finishPass(RenderPass pass) {
+		int[]                    tiles   = pass.tiles;
+		long                     est     = this._estimateBytes( tiles );
+		long                     held    = est; //reserved bytes not yet handed to a kept mosaic
+		if (!RasterBudget.reserve( est, RASTER_WAIT_MS, () -> this._cancelled )) {
+			throw new RejectedExecutionException("ERR -- GmapRender.render -- Raster memory budget exhausted, " + est + " bytes needed.");
+		}
+		ArrayList<BufferedImage> scratch = new ArrayList<>(); //pooled rasters to recycle once the composite is drawn
+		try {
+			ArrayList<BufferedImage> layers = new ArrayList<>();
+			for (int uid : this._map_order) {
+				if (this._cancelled) { throw new CancellationException("ERR -- GmapRender.render -- Render cancelled."); }
+				TileMosaic mosaic = this._getMosaic( uid );
+				long       grown  = mosaic.bytesToFit( tiles[0],tiles[1],tiles[2],tiles[3],tiles[4] );
+				           mosaic.moveTo( tiles[0],tiles[1],tiles[2],tiles[3],tiles[4] );
+				if (grown > 0) {
+					RasterBudget.keep( mosaic.getImage() ); //counted until the mosaic is released
+					held -= grown;
+				}
+				this._mergeTiles( uid, mosaic, tiles );
+				BufferedImage rotated = this._orientOutput( this._orientLayer( mosaic.getImage(), mosaic.getX(), mosaic.getY(), tiles[4], pass.center ), pass.angle );
+				scratch.add( rotated );
+				layers.add( rotated );
+			}
+			if (this._compass_icon.length()>0) {
+				BufferedImage compass = this._compassGen( pass.angle );
+				scratch.add( compass );
+				layers.add( compass );
+			}
+			this._image_temp = _mergeLayers( layers );
+			return( this._image_temp );
+		} finally {
+			for (BufferedImage img : scratch) { RasterBudget.recycle( img ); }
+			if (!this._keep_mosaics) { this.release(); }
+			RasterBudget.release( held );
+		}
+	}
+	
+	/**
+	* this._estimateBytes(int[] tiles) { return (long)bytes; }
+	* <p>
+	* Notes:<p>
+	* 	Upper bound of the raster bytes one render() allocates: mosaic rasters that must grow,<p>
+	* 	one rotation square per layer, the compass layer and the output composite.<p>
+	*/
+	private long _estimateBytes(int[] tiles) {
+		int  layers   = this._map_order.size();
+		int  diameter = (int)(Math.ceil(Math.sqrt( this._res[0]*this._res[0] + this._res[1]*this._res[1] )));
+		long merge    = 0;
+		for (int uid : this._map_order) { merge += this._getMosaic( uid ).bytesToFit( tiles[0],tiles[1],tiles[2],tiles[3],tiles[4] ); }
+		long rotate   = layers * RasterBudget.bytes( diameter, diameter );
+		long output   = RasterBudget.bytes( this._res[0], this._res[1] ) * ((this._compass_icon.length()>0) ? 2 : 1);
+		return( merge + rotate + output );
+	}
+	
+	/**
+	* GmapRender::renderAsync(RenderRequest req, long timeout_ms) { return CompletableFuture<BufferedImage>; }
+	* <p>
+	* Notes:<p>
+	* 	Renders req on a shared pool of RENDER_THREADS threads, the caller does not block or make a GmapRender.<p>
+	* 	A render thread finds and queues the tiles, then is given back while ASYNC_TILE_THREADS threads download them,<p>
+	* 	and a render thread is taken again to draw them, so slow tile servers do not hold render threads.<p>
+	* 	The future fails with RejectedExecutionException if RENDER_QUEUE_MAX stages are already waiting for a render thread,<p>
+	* 	and with TimeoutException if timeout_ms (when >0) passes before the render completes.<p>
+	* 	Cancelling the future, or the timeout, takes the render's queued downloads back out of the tile pool and stops it at the next layer.<p>
+	* 	A request GmapRender cannot render (for example a latitude outside the projection) fails the future, it is never thrown.<p>
+	*/
+	public static CompletableFuture<BufferedImage> renderAsync(RenderRequest req, long timeout_ms) {
+		CompletableFuture<BufferedImage> result = new CompletableFuture<>();
+		AtomicReference<GmapRender>      job    = new AtomicReference<>(); //set once the render thread has built it
+		AtomicReference<Future<?>>       task   = new AtomicReference<>(); //stage queued or running on the render pool
+		_submitStage( task, result, () -> {
+			GmapRender render = new GmapRender( req ); //on the render thread, a request it cannot be built from fails the future
+			job.set( render );
+			if (result.isDone()) { render._cancel(); return; } //cancelled or timed out while being built
+			RenderPass pass = render._startPass();
+			_downloaded( pass ).thenRun( () -> _submitStage( task, result, () -> result.complete( render._finishPass( pass ) ) ) );
+		});
+		if (timeout_ms > 0) {
+			ScheduledFuture<?> timer = _deadline_timer.schedule( () -> result.completeExceptionally( new TimeoutException("ERR -- GmapRender.renderAsync -- Deadline of " + timeout_ms + "ms passed.") ),
+			                                                     timeout_ms, TimeUnit.MILLISECONDS );
+			result.whenComplete( (img, e) -> timer.cancel( false ) );
+		}
+		result.whenComplete( (img, e) -> {
+			if (e == null) { return; }
+			if (job.get() != null) { job.get()._cancel(); }
+			_unqueueStage( task.get() );
+		});
+		return( result );
+	}
+	
+	/**Runs one renderAsync(...) stage on the render pool unless result is already done, a stage that throws fails result.*/
+	private static void _submitStage(AtomicReference<Future<?>> task, CompletableFuture<BufferedImage> result, Runnable stage) {
+		if (result.isDone()) { return; }
+		try {
+			task.set( _getAsyncPools()[0].submit( () -> {
+				if (result.isDone()) { return; }
+				try {
+					stage.run();
+				} catch (Throwable e) {
+					result.completeExceptionally( e );
+				}
+			}));
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally( e );
+			return;
+		}
+		if (result.isDone()) { _unqueueStage( task.get() ); } //failed while being queued
+	}
+	
+	/**Drops a renderAsync(...) stage that has not started, freeing its RENDER_QUEUE_MAX slot now.*/
+	private static void _unqueueStage(Future<?> task) {
+		if ((task != null)&&(task.cancel( false ))) { _render_pool.remove( (Runnable)task ); }
+	}
+	
+	/**
+	* this._cancel() {return;}
+	* <p>
+	* Notes:<p>
+	* 	Stops a renderAsync(...) render for good: queued downloads are taken out of the tile pool and their jobs completed,<p>
+	* 	a waiting render wakes, and render() throws CancellationException at the next layer or RasterBudget wait.<p>
+	*/
+	private void _cancel() {
+		this._cancelled = true;
+		synchronized (this) { this._nextGeneration(); }
+		for (TileJob job : this._queued) {
+			if (this._tile_pool.remove( job )) { job.done.complete( null ); } //a job a thread already took completes itself
+		}
+		RasterBudget.wake(); //stop waiting for raster memory
+	}
+	
+	/**
+	* this.release() {return;}
+	* <p>
+	* Notes:<p>
+	* 	Hands the kept mosaics back to RasterBudget, call it when done with this GmapRender,<p>
+	* 	a GmapRender dropped without release() leaves its mosaics counted against the budget.<p>
+	* 	The next render() starts over and draws every tile again.<p>
+	*/
+	public void release() {
+		synchronized (this._render_lock) {
+			for (TileMosaic mosaic : this._mosaics.values()) { mosaic.release(); }
+			this._mosaics.clear();
+			this._mosaic_sources.clear();
+		}
+	}
+	
+	/**
+	* GmapRender::getTilesMerged() { return (long)count; }
+	* <p>
+	* Notes:<p>
+	* 	Running count of tiles drawn into layers by every GmapRender, whether downloaded or read from the temp folder.<p>
+	*/
+	public static long getTilesMerged() { return( _tiles_merged.get() ); }
+	
+	private static synchronized ThreadPoolExecutor[] _getAsyncPools() {
+		if (_render_pool == null) {
+			_render_pool     = new ThreadPoolExecutor( RENDER_THREADS, RENDER_THREADS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>( RENDER_QUEUE_MAX ), _daemon_factory );
+			_render_pool.allowCoreThreadTimeOut( true );
+			_async_tile_pool = new ThreadPoolExecutor( ASYNC_TILE_THREADS, ASYNC_TILE_THREADS, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), _daemon_factory );
+			_async_tile_pool.allowCoreThreadTimeOut( true );
+			_deadline_timer  = new ScheduledThreadPoolExecutor( 1, _daemon_factory );
+			_deadline_timer.setRemoveOnCancelPolicy( true );
+		}
+		return( new ThreadPoolExecutor[]{ _render_pool, _async_tile_pool } );
+	}
+	
 	public BufferedImage update() {
         return( this._image_temp );
 	}
@@ -131,10 +552,22 @@ public class GmapRender {
 	public int checkWorkers() { return(0);
 	}
 	
-	public int inQueue() { return(0);
+	/**
+	* this.inQueue() { return (int)count; }
+	* <p>
+	* Notes:<p>
+	* 	Count of tile downloads waiting for a thread.<p>
+	*/
+	public synchronized int inQueue() { return( (this._tile_pool==null) ? 0 : this._tile_pool.getQueue().size() );
 	}
 	
-	public int inThreads() { return(0);
+	/**
+	* this.inThreads() { return (int)count; }
+	* <p>
+	* Notes:<p>
+	* 	Count of tile downloads currently running.<p>
+	*/
+	public synchronized int inThreads() { return( (this._tile_pool==null) ? 0 : this._tile_pool.getActiveCount() );
 	}
 	
 	/**
@@ -151,10 +584,10 @@ public class GmapRender {
 		}
 		int[]    c_imgpx = {this._res[0],this._res[1]};
 		double[] c_coord = GmapUtils.latlonCenter( this._coord_bounds );
-		int[]    c_abspx = GmapUtils.latlon2abspx( this._zoom, c_coord[0], c_coord[1] );
-		int[]    d_abspx = {c_abspx[0]-c_imgpx[0], c_abspx[1]-c_imgpx[1]};
-		int[]    t_abspx = {x + d_abspx[0], y + d_abspx[1]};
-		return( GmapUtils.abspx2latlon( this._zoom, t_abspx[0], t_abspx[1]) ); //target lat-long
+		long[]   c_abspx = GmapProjection.latlon2abspx( this._zoom, c_coord[0], c_coord[1] );
+		long[]   d_abspx = {c_abspx[0]-c_imgpx[0], c_abspx[1]-c_imgpx[1]};
+		long[]   t_abspx = {x + d_abspx[0], y + d_abspx[1]};
+		return( GmapProjection.abspx2latlon( this._zoom, t_abspx[0], t_abspx[1]) ); //target lat-long
 	}
 	
 	/**
@@ -169,11 +602,11 @@ public class GmapRender {
 	*/
 	public int[] latlon2px(double lat, double lon) {
 		int[]    center_imgpx = {this._res[0]/2,this._res[1]/2};
-		int[]    center_abspx = GmapUtils.latlon2abspx( this._zoom, this._coord_center[0], this._coord_center[1] );
-		int[]    target_abspx = GmapUtils.latlon2abspx( this._zoom, lat, lon);
-		int[]    offset_abspx = {center_abspx[0]-center_imgpx[0], center_abspx[1]-center_imgpx[1]};
-		int[]    target_imgpx = {target_abspx[0]-offset_abspx[1], target_abspx[1]-offset_abspx[1]};
-		return( new int[]{ target_imgpx[0], target_imgpx[1]} );
+		long[]   center_abspx = GmapProjection.latlon2abspx( this._zoom, this._coord_center[0], this._coord_center[1] );
+		long[]   target_abspx = GmapProjection.latlon2abspx( this._zoom, lat, lon);
+		long[]   offset_abspx = {center_abspx[0]-center_imgpx[0], center_abspx[1]-center_imgpx[1]};
+		long[]   target_imgpx = {target_abspx[0]-offset_abspx[1], target_abspx[1]-offset_abspx[1]};
+		return( new int[]{ (int)target_imgpx[0], (int)target_imgpx[1]} );
 	}
 	
 	//Helpers ==========
@@ -203,110 +636,329 @@ public class GmapRender {
         return(composite);
 	}
 	
-	private static ArrayList<String> _worker(String url, String useragent, String filename, int id) {
-		return( new ArrayList<String>(){{add("");}} );
+	/**
+	* _worker(String url, String useragent, String filename, int id) { return hash; }
+	* <p>
+	* Notes:<p>
+	* 	Downloads url and stores it in TileCache under filename, returning the content hash.<p>
+	* 	Throws IOException on connection errors or a non-200 response.<p>
+	*/
+	private static String _worker(String url, String useragent, String filename, int id) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection)(new URL( url ).openConnection());
+		                  conn.setConnectTimeout( 10000 );
+		                  conn.setReadTimeout( 10000 );
+		                  conn.setRequestProperty( "User-Agent", useragent );
+		try {
+			int code = conn.getResponseCode();
+			if (code != HttpURLConnection.HTTP_OK) {
+				throw new IOException("ERR -- GmapRender._worker -- Job " + id + " got HTTP " + code + " from " + url);
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (InputStream in = conn.getInputStream()) {
+				byte[] buf = new byte[8192];
+				for (int n = in.read(buf); n >= 0; n = in.read(buf)) { out.write( buf, 0, n ); }
+			}
+			return( TileCache.put( filename, out.toByteArray() ) );
+		} finally {
+			conn.disconnect();
+		}
 	}
 	
 	/**
-    * this._findTiles() { return(new int[5]{tile_x_min,tile_x_max,tile_y_min,tile_y_max,zoom}); }
+    * this._findTiles(double[] center, ArrayList<double[]> bounds) { return(new int[5]{tile_x_min,tile_x_max,tile_y_min,tile_y_max,zoom}); }
     * 
     * Notes:
-    *   Uses intermediate values set by this.setCoordList(...)
+    *   Uses intermediate values computed by this.setCoordList(...)
+    *   Throws ArithmeticException if the view reaches past the Mercator latitude limit, GmapProjection.MAX_LAT_DEG.
     *
     * @see setCoordList
     */
-	private int[] _findTiles() {
+	private int[] _findTiles(double[] center, ArrayList<double[]> bounds) {
+        for (double[] bound : bounds) {
+            if (Math.abs( bound[0] ) > GmapProjection.MAX_LAT_DEG) { throw new ArithmeticException("ERR -- GmapRender._findTiles -- View extends past the Mercator latitude limit."); }
+        }
         int    radius_px       = (int)( Math.ceil(Math.sqrt( this._res[0]*this._res[0] + this._res[1]*this._res[1] )) );
         int[]  square_imgpx    = new int[2];
                square_imgpx[0] = (int)(Math.ceil(Math.sqrt(8.0)*(double)radius_px)); //expand to allow for this._res to be rotated within square_imgpx bounds.
                square_imgpx[1] = square_imgpx[0];
-               this._zoom      = GmapUtils.zoomFromCoords( square_imgpx, this._coord_bounds.get(0), this._coord_bounds.get(1), this._coord_center );
-        int[]  tile_bounds     = GmapUtils.tileBounds( this._zoom, this._coord_bounds.get(0), this._coord_bounds.get(1) );
-        return( new int[]{ tile_bounds[0],tile_bounds[1],tile_bounds[2],tile_bounds[3], this._zoom} );
+        int    zoom            = GmapProjection.zoomFromCoords( square_imgpx, bounds.get(0), bounds.get(1), center, this._max_zoom );
+        int[]  tile_bounds     = GmapProjection.tileBounds( zoom, bounds.get(0), bounds.get(1) );
+        return( new int[]{ tile_bounds[0],tile_bounds[2],tile_bounds[1],tile_bounds[3], zoom} );
 	}
 	
-	private String _genUrl(int uid, int x, int y, int zoom) { return( new String("") );
+	private TileSource _getSource(int uid) {
+        TileSource src = this._map_sources.get( uid );
+        if (src == null) { throw new IllegalArgumentException("ERR -- GmapRender._getSource -- Unknown source uid " + uid); }
+        return( src );
+	}
+	
+	private String _genUrl(int uid, int x, int y, int zoom) { return( this._getSource(uid).genUrl( x, y, zoom ) );
 	}
 	
 	private String _genFilename(int uid, int x, int y, int zoom) {
-        String ext = new String("jpg");
-        if (true) throw new UnsupportedOperationException("ERR -- GampRender._genFilename -- Extension fetching is not completed.");
-        return String.format("%d_%d_%d_%d.%s", uid, x, y, zoom, ext);
-	}
-	
-	private void _queueTiles(int uid, int x_min, int x_max, int y_min, int y_max, int zoom) {
-	}
-	
-	private BufferedImage _mergeTiles(int uid, int x_min, int x_max, int y_min, int y_max, int zoom) {
-        int width  = GmapUtils.TILE_SIZE * (x_max - x_min + 1);
-        int height = GmapUtils.TILE_SIZE * (y_max - y_min + 1);
-        BufferedImage image_layer = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
-        Graphics      graph_layer = image_layer.getGraphics();
-        for (int x = x_min; x<=x_max; x+=1) {
-            for (int y = y_min; y<=y_max; y+=1) {
-                String        fname = this._genFilename( uid, x,y,this._zoom);
-                File          fd    = new File( fname );
-                if ((fd.exists())&&(fd.isFile())) {
-                    try {
-                        BufferedImage img = ImageIO.read( fd );
-                        graph_layer.drawImage( img, GmapUtils.TILE_SIZE*(x-x_min), GmapUtils.TILE_SIZE*(y-y_min), null);
-                    } catch (IOException e) {
-                        System.err.println("ERR -- GmapRender._mergeTiles -- Error reading input file " + fname + "  " + e.getMessage());
-                    }
+        String ext = this._getSource(uid).getExt();
+        return this._temp_path + File.separator + String.format("%d_%d_%d_%d.%s", uid, x, y, zoom, ext);
+	}
+	
+	/**
+	* TileJob is one queued tile download.<p>
+	* Jobs are ordered by render (oldest first, renderAsync(...) renders share one pool and their generations are unrelated),<p>
+	* then newest generation first, then by distance from the view center, so the middle of the view arrives first.<p>
+	* A job from an older generation is dropped when it runs if its tile is no longer in the current view.<p>
+	*/
+	private class TileJob implements Runnable, Comparable<TileJob> {
+		final long                      render     = _render_id;
+		final long                      generation;
+		final double                    dist;
+		final long                      seq        = _job_seq.getAndIncrement();
+		final int                       x, y, zoom;
+		final String                    url, fname, useragent;
+		final long                      ttl;
+		final CompletableFuture<String> done       = new CompletableFuture<>();
+		
+		TileJob(long generation, double dist, int x, int y, int zoom, String url, String fname, String useragent, long ttl) {
+			this.generation = generation; this.dist  = dist;
+			this.x          = x;          this.y     = y;     this.zoom      = zoom;
+			this.url        = url;        this.fname = fname; this.useragent = useragent;
+			this.ttl        = ttl;
+		}
+		
+		public int compareTo(TileJob o) {
+			if (this.render     != o.render)     { return( Long.compare( this.render, o.render ) ); }
+			if (this.generation != o.generation) { return( Long.compare( o.generation, this.generation ) ); }
+			if (this.dist       != o.dist)       { return( Double.compare( this.dist, o.dist ) ); }
+			return( Long.compare( this.seq, o.seq ) );
+		}
+		
+		public void run() {
+			_queued.remove( this );
+			if ((_cancelled)||((this.generation != _generation.get())&&(!_inView( this.x, this.y, this.zoom )))) {
+				this.done.complete( null ); //obsolete, the view moved away from this tile
+				return;
+			}
+			try {
+				this.done.complete( _download_flight.fetch( this.fname, () -> {
+					String key = _lookupTile( this.fname ); //another render may have finished this tile since it was queued
+					return( (key != null) ? key : _worker(this.url, this.useragent, this.fname, (int)this.seq) );
+				}, this.ttl ).join() );
+			} catch (CompletionException e) {
+				this.done.completeExceptionally( e.getCause() );
+			}
+		}
+	}
+	
+	/**Moves to the next generation and wakes a render waiting on the old one, caller holds this.*/
+	private void _nextGeneration() {
+		this._generation.incrementAndGet();
+		this._view_changed.complete( null );
+		this._view_changed = new CompletableFuture<>();
+	}
+	
+	private boolean _inView(int x, int y, int zoom) {
+		int[] view = this._view_tiles;
+		return( (view!=null)&&(zoom==view[4])&&(x>=view[0])&&(x<=view[1])&&(y>=view[2])&&(y<=view[3]) );
+	}
+	
+	private synchronized ThreadPoolExecutor _getTilePool() {
+		if (this._tile_pool == null) {
+			this._tile_pool = new ThreadPoolExecutor( this._threads_max, this._threads_max, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), _daemon_factory );
+			this._tile_pool.allowCoreThreadTimeOut( true );
+		}
+		return( this._tile_pool );
+	}
+	
+	/**
+	* this._queueTiles(int uid, TileMosaic mosaic, int[] tiles, long gen, double[] center, ArrayList<TileJob> jobs) {return;}
+	* <p>
+	* Notes:<p>
+	* 	Queues a download of every tile in the range that is neither drawn in mosaic (if not null) nor in the temp folder, and adds it to jobs.<p>
+	* 	Tiles are handed to the pool nearest to center first, idle threads take jobs directly so the first ones must already be in order.<p>
+	* 	Downloads go through _download_flight, so a tile is fetched once even if several renders need it.<p>
+	*/
+	private void _queueTiles(int uid, TileMosaic mosaic, int[] tiles, long gen, double[] center, ArrayList<TileJob> jobs) {
+        int                zoom      = tiles[4];
+        ArrayList<TileJob> queue     = new ArrayList<>();
+        ThreadPoolExecutor pool      = this._getTilePool();
+        long               ttl       = 1000L * this._retry_after;
+        long[]             center_px = GmapProjection.latlon2abspx( zoom, center[0], center[1] );
+        double[]           center_tl = {((double)center_px[0])/GmapUtils.TILE_SIZE, ((double)center_px[1])/GmapUtils.TILE_SIZE}; //in tiles
+        for (int x = tiles[0]; x<=tiles[1]; x+=1) {
+            for (int y = tiles[2]; y<=tiles[3]; y+=1) {
+                if ((mosaic != null)&&(mosaic.has( x,y,zoom ))) { continue; }
+                String fname = this._genFilename( uid, x,y,zoom );
+                if (_lookupTile( fname ) != null) { continue; }
+                double dx    = x + 0.5 - center_tl[0];
+                double dy    = y + 0.5 - center_tl[1];
+                queue.add( new TileJob( gen, dx*dx + dy*dy, x, y, zoom, this._genUrl( uid, x,y,zoom ), fname, this._user_agent, ttl ) );
+            }
+        }
+        Collections.sort( queue );
+        for (TileJob job : queue) {
+            this._queued.add( job );
+            pool.execute( job );
+        }
+        jobs.addAll( queue );
+	}
+	
+	/**
+	* _lookupTile(String fname) { return String key; }
+	* <p>
+	* Notes:<p>
+	* 	TileCache.lookup(fname), or null if the tile is not downloaded or cannot be read.<p>
+	*/
+	private static String _lookupTile(String fname) {
+		try {
+			return( TileCache.lookup( fname ) );
+		} catch (IOException e) {
+			System.err.println("ERR -- GmapRender._lookupTile -- Error reading tile " + fname + "  " + e.getMessage());
+			return( null );
+		}
+	}
+	
+	/**
+	* _readTile(String fname, String key) { return BufferedImage; }
+	* <p>
+	* Notes:<p>
+	* 	Returns the decoded raster for a tile's TileCache content key, shared with every other tile of the same content.<p>
+	* 	Decoding goes through _decode_flight, so concurrent renders needing the same content share one decode.<p>
+	* 	Decoded rasters are shared, callers must only read them.<p>
+	* 	Up to DECODED_MAX_BYTES of them are cached, counted by RasterBudget.tryKeep(...), tiles that do not fit are not cached.<p>
+	*/
+	private static BufferedImage _readTile(String fname, String key) {
+		BufferedImage img;
+		synchronized (_decoded) { img = _decoded.get( key ); }
+		if (img != null) { return( img ); }
+		img = _decode_flight.fetch( key, () -> ImageIO.read( new File( fname ) ) ).join();
+		if (img != null) {
+			synchronized (_decoded) { _keepDecoded( key, img ); }
+		}
+		return( img );
+	}
+	
+	/**Adds img to _decoded, evicting least recently used rasters to stay in bytes, caller holds _decoded.*/
+	private static void _keepDecoded(String key, BufferedImage img) {
+		if (_decoded.containsKey( key )) { return; }
+		long bytes = RasterBudget.bytes( img );
+		long max   = Math.min( DECODED_MAX_BYTES, RasterBudget.getLimit() / 8 );
+		Iterator<BufferedImage> eldest = _decoded.values().iterator();
+		while ((_decoded_bytes + bytes > max)&&(eldest.hasNext())) {
+			long freed = RasterBudget.bytes( eldest.next() );
+			eldest.remove();
+			_decoded_bytes -= freed;
+			RasterBudget.drop( freed );
+		}
+		if ((_decoded_bytes + bytes > max)||(!RasterBudget.tryKeep( bytes ))) { return; } //not cached, the caller still draws it
+		_decoded.put( key, img );
+		_decoded_bytes += bytes;
+	}
+	
+	/**
+	* this._mergeTiles(int uid, TileMosaic mosaic, int[] tiles) {return;}
+	* <p>
+	* Notes:<p>
+	* 	Draws every tile of the range that is in the temp folder but not yet in mosaic, missing tiles stay transparent.<p>
+	*/
+	private void _mergeTiles(int uid, TileMosaic mosaic, int[] tiles) {
+        int zoom = tiles[4];
+        for (int x = tiles[0]; x<=tiles[1]; x+=1) {
+            for (int y = tiles[2]; y<=tiles[3]; y+=1) {
+                if (mosaic.has( x,y,zoom )) { continue; }
+                String        fname = this._genFilename( uid, x,y,zoom);
+                String        key   = _lookupTile( fname );
+                BufferedImage img   = null;
+                try {
+                    img = (key == null) ? null : _readTile( fname, key );
+                } catch (CompletionException e) {
+                    System.err.println("ERR -- GmapRender._mergeTiles -- Error reading input file " + fname + "  " + e.getCause().getMessage());
+                }
+                if (img != null) {
+                    mosaic.draw( x,y, img );
+                    _tiles_merged.incrementAndGet();
                 }
             }
         }
-        return( image_layer );
     }
 	
+	/**
+	* this._getMosaic(int uid) { return TileMosaic; }
+	* <p>
+	* Notes:<p>
+	* 	The source's mosaic, a fresh one if the source was replaced since it was drawn.<p>
+	*/
+	private TileMosaic _getMosaic(int uid) {
+		TileSource src    = this._getSource( uid );
+		TileMosaic mosaic = this._mosaics.get( uid );
+		if ((mosaic == null)||(this._mosaic_sources.get( uid ) != src)) {
+			if (mosaic != null) { mosaic.release(); }
+			mosaic = new TileMosaic( this._keep_mosaics ? 1 : 0 ); //one-shot renders never pan, no margin
+			this._mosaics.put( uid, mosaic );
+			this._mosaic_sources.put( uid, src );
+		}
+		return( mosaic );
+	}
+	
+	/**Drops mosaics of removed sources, or all of them if the temp folder changed.*/
+	private void _pruneMosaics() {
+		boolean moved = !this._temp_path.equals( this._mosaic_path );
+		this._mosaic_path = this._temp_path;
+		for (Integer uid : new ArrayList<>( this._mosaics.keySet() )) {
+			if ((moved)||(!this._map_sources.containsKey( uid ))) {
+				this._mosaics.remove( uid ).release();
+				this._mosaic_sources.remove( uid );
+			}
+		}
+	}
+	
     /**
-    * this._orientLayer(BufferedImage in_image) { return in_image.subsectionOfSize(wid,hei); }
+    * this._orientLayer(BufferedImage in_image, int x_min, int y_min, int zoom, double[] center) { return in_image.subsectionOfSize(wid,hei); }
     * 
     * Notes:
+    *   Crops a square of the output diagonal, centered on center, from a layer whose top-left tile is (x_min,y_min).
     *   This method does not return a new image object, but a subsection reference to the original.
     *   In other words, a change made to either the input or output image, is shared by the other.
     *   This is because BufferedImage.getSubimage(x,y,w,h) is used for the cropping the dimensions.
     * 
     *   @return BufferedImage in_image.subsectionOfSize(wid,hei)  In other words the input and output share the same mutable data, and color change in one will affect the other.
     */
-	private BufferedImage _orientLayer(BufferedImage in_image) {
+	private BufferedImage _orientLayer(BufferedImage in_image, int x_min, int y_min, int zoom, double[] center) {
         int   diameter_px       = (int)(Math.ceil(Math.sqrt( this._res[0]*this._res[0] + this._res[1]*this._res[1] )));
-        int[] center_abspx      = GmapUtils.latlon2abspx( this._zoom, this._coord_center[0], this._coord_center[1] );
-        int[] min_abspx         = GmapUtils.latlon2abspx( this._zoom, this._coord_bounds.get(0)[0], this._coord_bounds.get(0)[1] );
-        int[] min_off_abspx     = {min_abspx[0] % GmapUtils.TILE_SIZE, min_abspx[1] % GmapUtils.TILE_SIZE};
-        return( in_image.getSubimage(min_off_abspx[0],min_off_abspx[1], diameter_px,diameter_px) );
+              diameter_px       = Math.min( diameter_px, Math.min( in_image.getWidth(), in_image.getHeight() ) );
+        long[] center_abspx     = GmapProjection.latlon2abspx( zoom, center[0], center[1] );
+        int[] center_layerpx    = {(int)(center_abspx[0] - (long)x_min*GmapUtils.TILE_SIZE), (int)(center_abspx[1] - (long)y_min*GmapUtils.TILE_SIZE)};
+        int[] min_off_layerpx   = {Math.max(0, Math.min( center_layerpx[0] - diameter_px/2, in_image.getWidth()  - diameter_px )),
+                                   Math.max(0, Math.min( center_layerpx[1] - diameter_px/2, in_image.getHeight() - diameter_px ))};
+        return( in_image.getSubimage(min_off_layerpx[0],min_off_layerpx[1], diameter_px,diameter_px) );
 	}
 	
     /**
-    * this._orientOutput( BufferedImage in_image) { return new BufferedImage(); }
+    * this._orientOutput( BufferedImage in_image, double angle) { return new BufferedImage(); }
     * 
     * Notes:
-    *   Given an assumed square input image, rotate and crop to this._res output resolution.
+    *   Given an assumed square input image, rotate by angle (degrees) and crop to this._res output resolution.
+    *   The result is a subimage of a RasterBudget pooled raster, render() recycles it.
     * @return new BufferedImage() of size {this._res[0], this._res[1]} == {width, height}
     */
-	private BufferedImage _orientOutput(BufferedImage in_image) {
-        int                radius    = (int)Math.ceil(Math.sqrt( this._res[0]*this._res[0] + this._res[1]*this._res[1] )/2.0);
-        int[]              center    = new int[]{ in_image.getWidth()/2, in_image.getHeight()};
-        double             angle     = Math.toRadians( this._angle );
+	private BufferedImage _orientOutput(BufferedImage in_image, double angle) {
+        int[]              center    = new int[]{ in_image.getWidth()/2, in_image.getHeight()/2};
         AffineTransform    rot       = new AffineTransform();
-                           rot.rotate( angle, center[0], center[1] );
+                           rot.rotate( Math.toRadians( angle ), center[0], center[1] );
         AffineTransformOp  rot_oper  = new AffineTransformOp(rot, AffineTransformOp.TYPE_BILINEAR);
-        BufferedImage      out_image = new BufferedImage(in_image.getWidth(), in_image.getHeight(), BufferedImage.TYPE_INT_ARGB);
-                           out_image = rot_oper.filter(  in_image, null );
-        int[]              box       = new int[] {center[0]-radius, center[1]-radius, this._res[0], this._res[1] }; //min_x,min_y,width,height
-                           out_image.getSubimage(box[0], box[1], box[2], box[3]);
-        return( out_image );
+        BufferedImage      out_image = RasterBudget.image( in_image.getWidth(), in_image.getHeight() ); //corners rotated outside are clipped, only the center is kept
+                           rot_oper.filter( in_image, out_image );
+        int[]              box       = new int[] {Math.max(0, center[0]-this._res[0]/2), Math.max(0, center[1]-this._res[1]/2),
+                                                  Math.min(this._res[0], out_image.getWidth()), Math.min(this._res[1], out_image.getHeight()) }; //min_x,min_y,width,height
+        return( out_image.getSubimage(box[0], box[1], box[2], box[3]) );
 	}
 	
     /**
-    * this._compassGen() { return new BufferedImage(); }
+    * this._compassGen(double angle) { return new BufferedImage(); }
     * 
     * Notes:
     *   
     */
-	private BufferedImage _compassGen() {
-        BufferedImage      layer       = new BufferedImage( this._res[0], this._res[1], BufferedImage.TYPE_INT_ARGB );
-        BufferedImage      in_image    = new BufferedImage( 0,0, BufferedImage.TYPE_INT_ARGB );
+	private BufferedImage _compassGen(double angle) {
+        BufferedImage      layer       = RasterBudget.image( this._res[0], this._res[1] );
+        BufferedImage      in_image    = null;
         File               fd          = new File( this._compass_icon );
         if ((fd.exists())&&(fd.isFile())) {
             try {
@@ -315,9 +967,9 @@ public class GmapRender {
                 System.err.println("ERR -- GmapRender._compassGen -- Error reading input file " + this._compass_icon + "  " + e.getMessage());
             }
         }
-        double             angle       = Math.toRadians( this._angle );
+        if (in_image == null) { return( layer ); }
         AffineTransform    rot         = new AffineTransform();
-                           rot.rotate( angle, in_image.getWidth()/2, in_image.getHeight()/2 );
+                           rot.rotate( Math.toRadians( angle ), in_image.getWidth()/2, in_image.getHeight()/2 );
         AffineTransformOp  rot_oper    = new AffineTransformOp(rot, AffineTransformOp.TYPE_BILINEAR);
                            in_image    = rot_oper.filter( in_image, null );
         Graphics           g           = layer.getGraphics();
@@ -22,7 +22,7 @@ public class GmapUtils {
 	public static double MIN_LON          = -Math.PI;
 	/**Maximum longitude value in radians.*/
 	public static double MAX_LON          =  Math.PI;
-	/**Maximum supported zoom level integer value.*/
+	/**Maximum supported zoom level integer value, int pixels overflow past 22, see GmapProjection for deeper zooms.*/
         public static int    MAX_ZOOM         =  20;
 	
     /**
@@ -34,7 +34,7 @@ public class GmapUtils {
 	*/
 	public static int maxAbspx(int zoom) {
 		if ((zoom > MAX_ZOOM)||(zoom<0)) { throw new IllegalArgumentException("ERR -- GmapUtils.maxAbspx -- Invalid Zoom Level"); }
-		return( TILE_SIZE * (int)(Math.pow(2,zoom)) );
+		return( TILE_SIZE << zoom );
 	}
 	
 	/**
@@ -53,8 +53,8 @@ public class GmapUtils {
 		while (y>max) { y -= max; }
 		double lon  = ( ((double)x)*360.0 / ((double)max) ) - 180.0;
 		while (lon > 180.0) { lon -= 360.0; }
-		while (lon < 180.0) { lon += 360.0; }
-		double expo = ( (double)(y-( ((double)TILE_SIZE) * Math.pow(2.0,(double)zoom) )) / ( ((double)max)/(-2.0*Math.PI)) );
+		while (lon < -180.0) { lon += 360.0; }
+		double expo = ( (double)(y-( ((double)max)/2.0 )) / ( ((double)max)/(-2.0*Math.PI)) );
 		double lat  = ( ((2.0*Math.atan(Math.exp(expo))) -(Math.PI/2.0) ) / (Math.PI/180.0) );
 		return(new double[] {lat,lon});
 	}
@@ -114,9 +114,10 @@ public class GmapUtils {
 	* 	Converts lat-long to nearest pyramid (absolute) pixel at a zoom level.<p>
 	*/
 	public static int[] latlon2abspx(int zoom, double lat, double lon) {
-		double xd      = ((double)TILE_SIZE) * Math.pow(2,zoom) * (lon+180.0) / 360.0;
-		double yd     = -(0.5*Math.log((1.0+Math.sin(Math.toRadians(lat))) / (1.0-Math.sin(Math.toRadians(lat)))) / Math.PI-1.0)*TILE_SIZE*Math.pow(2,zoom-1);
 		double max_px = maxAbspx(zoom);
+		double sin    = Math.sin(Math.toRadians(lat));
+		double xd     = max_px * (lon+180.0) / 360.0;
+		double yd     = -(0.5*Math.log((1.0+sin) / (1.0-sin)) / Math.PI-1.0)*(max_px/2.0);
 		int x = (int)xd;
 		int y = (int)yd;
 		if ((x<0)||(x>=max_px)||(y<0)||(y>=max_px)) { throw new ArithmeticException("ERR -- GmapUtils.latlon2abspx -- Equation error, bound exceeded."); }
@@ -272,7 +273,7 @@ public class GmapUtils {
 		int[] abspx_a     = latlon2abspx(zoom,coord_a[0],coord_a[1]);
                 int[] abspx_b     = latlon2abspx(zoom,coord_b[0],coord_b[1]);
                 int[] abspx_min   = { Math.min(abspx_a[0],abspx_b[0]), Math.min(abspx_a[1],abspx_b[1]) };
-                int[] abspx_max   = { Math.max(abspx_a[0],abspx_b[0]), Math.max(abspx_b[1],abspx_b[1]) };
+                int[] abspx_max   = { Math.max(abspx_a[0],abspx_b[0]), Math.max(abspx_a[1],abspx_b[1]) };
                 int[] abspx_count = { Math.abs(abspx_max[0]-abspx_min[0]+1), Math.abs(abspx_max[1]-abspx_min[1]+1) }; //inclusive range
                 return( new int[] { abspx_min[0],abspx_min[1],abspx_max[0],abspx_max[1],abspx_count[0],abspx_count[1] } );
 	}
@@ -0,0 +1,257 @@
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+/**
+LoadTest drives GmapRender end to end (download, merge, orient, encode) against a local TileServer.<p>
+<p>
+Usage: java LoadTest [key=value ...]<p>
+	renders=20        Total renders to run.
+	concurrency=4     Renders running at the same time.
+	threads=4         GmapRender.setThreads(...) download threads per render.
+	width=256         Output resolution.
+	height=256
+	radius_km=1.0     View radius passed to setCoordList(...).
+	view=hotspot      View center distribution: fixed, hotspot (gaussian around a point), or uniform (square region).
+	layers=1          1 = jpg layer, 2 = jpg + png layer.
+	cold=false        true gives each render its own empty tile folder, so every tile is downloaded.
+	latency_ms=5      Tile server latency and random jitter.
+	jitter_ms=5
+	error_rate=0.0    Tile server HTTP 500 rate.
+	rate_limit=0      Tile server requests/second, 0 is unlimited.
+	blank_rate=0.0    Fraction of tiles served as one identical blank tile.
+	retry_s=1         GmapRender.setRetryPeriod(...) seconds.
+	encode=png        Output encoding timed as part of each render: png, jpg or none.
+	mode=sync         sync drives one GmapRender per render, async uses GmapRender.renderAsync(...) on the shared pools.
+	deadline_ms=0     async mode render deadline, 0 is none.
+	budget_mb=0       RasterBudget.setLimit(...) in MiB, 0 keeps the default.
+	projection_points=0  Also time projecting this many points at zoom 18, GmapUtils one by one vs GmapProjection bulk.
+	seed=1
+	out=              Also append the result line to this file.
+<p>
+Prints a single JSON line with throughput and render latency percentiles, for tracking across versions.<p>
+merged_tiles_per_sec counts tiles drawn into layers (cached or not), upstream_requests_per_sec counts every tile server request.
+*/
+public class LoadTest {
+	/**View centers are drawn around this point, same as UnitTestGmapUtils.*/
+	public static double[] VIEW_CENTER = {41.85,-87.649999};
+	private static volatile long _sink;
+
+	public static void main(String[] args) throws Exception {
+		HashMap<String,String> opt = new HashMap<>();
+		for (String arg : args) {
+			int i = arg.indexOf('=');
+			if (i <= 0) { throw new IllegalArgumentException("ERR -- LoadTest.main -- Expected key=value, got " + arg); }
+			opt.put( arg.substring(0,i), arg.substring(i+1) );
+		}
+		String result = run( opt );
+		System.out.println( result );
+		String out = opt.getOrDefault( "out", "" );
+		if (out.length() > 0) {
+			try (FileWriter fd_wr = new FileWriter( out, true )) { fd_wr.write( result + System.lineSeparator() ); }
+		}
+	}
+
+	/**
+	* run(HashMap<String,String> opt) { return String json_line; }
+	* <p>
+	* Notes:<p>
+	* 	See the class notes for options, missing options use the defaults.<p>
+	*/
+	public static String run(HashMap<String,String> opt) throws IOException, InterruptedException {
+		int     renders     = Integer.parseInt(    opt.getOrDefault( "renders",     "20"      ) );
+		int     concurrency = Integer.parseInt(    opt.getOrDefault( "concurrency", "4"       ) );
+		int     threads     = Integer.parseInt(    opt.getOrDefault( "threads",     "4"       ) );
+		int     width       = Integer.parseInt(    opt.getOrDefault( "width",       "256"     ) );
+		int     height      = Integer.parseInt(    opt.getOrDefault( "height",      "256"     ) );
+		double  radius_km   = Double.parseDouble(  opt.getOrDefault( "radius_km",   "1.0"     ) );
+		String  view        =                      opt.getOrDefault( "view",        "hotspot" );
+		int     layers      = Integer.parseInt(    opt.getOrDefault( "layers",      "1"       ) );
+		boolean cold        = Boolean.parseBoolean(opt.getOrDefault( "cold",        "false"   ) );
+		int     latency_ms  = Integer.parseInt(    opt.getOrDefault( "latency_ms",  "5"       ) );
+		int     jitter_ms   = Integer.parseInt(    opt.getOrDefault( "jitter_ms",   "5"       ) );
+		double  error_rate  = Double.parseDouble(  opt.getOrDefault( "error_rate",  "0.0"     ) );
+		int     rate_limit  = Integer.parseInt(    opt.getOrDefault( "rate_limit",  "0"       ) );
+		double  blank_rate  = Double.parseDouble(  opt.getOrDefault( "blank_rate",  "0.0"     ) );
+		int     retry_s     = Integer.parseInt(    opt.getOrDefault( "retry_s",     "1"       ) );
+		long    seed        = Long.parseLong(      opt.getOrDefault( "seed",        "1"       ) );
+		String  encode      =                      opt.getOrDefault( "encode",      "png"     );
+		String  mode        =                      opt.getOrDefault( "mode",        "sync"    );
+		long    deadline_ms = Long.parseLong(      opt.getOrDefault( "deadline_ms", "0"       ) );
+		long    budget_mb   = Long.parseLong(      opt.getOrDefault( "budget_mb",   "0"       ) );
+		int     proj_points = Integer.parseInt(    opt.getOrDefault( "projection_points", "0" ) );
+		if (budget_mb > 0) { RasterBudget.setLimit( budget_mb << 20 ); }
+		RasterBudget.resetPeak();
+		if (mode.equals("async")) {
+			GmapRender.RENDER_THREADS     = concurrency;
+			GmapRender.RENDER_QUEUE_MAX   = Math.max( 1, renders );
+			GmapRender.ASYNC_TILE_THREADS = concurrency*threads;
+		}
+
+		TileServer server = new TileServer( seed );
+		           server.setLatency( latency_ms, jitter_ms );
+		           server.setErrorRate( error_rate );
+		           server.setRateLimit( rate_limit );
+		           server.setBlankRate( blank_rate );
+		           server.setThreads( Math.max( 8, concurrency*threads ) );
+		           server.start();
+		ArrayList<TileSource> sources = new ArrayList<>();
+		                      sources.add( server.source( 1, "jpg" ) );
+		if (layers > 1)     { sources.add( server.source( 2, "png" ) ); }
+
+		File             root    = Files.createTempDirectory( "gmap_loadtest" ).toFile();
+		Random           random  = new Random( seed );
+		double[][]       centers = new double[renders][];
+		double[]         angles  = new double[renders];
+		for (int i = 0; i<renders; i+=1) {
+			centers[i] = _genCenter( view, random );
+			angles[i]  = 360.0 * random.nextDouble();
+		}
+
+		long[]                 latency_ns = new long[renders];
+		ArrayList<Future<?>>   jobs       = new ArrayList<>();
+		ExecutorService        pool       = Executors.newFixedThreadPool( concurrency );
+		long                   merged_0   = GmapRender.getTilesMerged();
+		long                   t_start    = System.nanoTime();
+		for (int i = 0; i<renders; i+=1) {
+			final int n = i;
+			jobs.add( pool.submit( () -> {
+				File dir = cold ? new File( root, "r" + n ) : root;
+				     dir.mkdirs();
+				if (mode.equals("async")) {
+					RenderRequest req = new RenderRequest( width, height, new ArrayList<double[]>(Arrays.asList( centers[n] )), radius_km, angles[n], sources ).withTempDir( dir.getPath() ).withRetryPeriod( retry_s );
+					long t0 = System.nanoTime();
+					BufferedImage image = GmapRender.renderAsync( req, deadline_ms ).get();
+					if (!encode.equals("none")) { _encode( image, encode ); }
+					latency_ns[n] = System.nanoTime() - t0;
+					return( null );
+				}
+				GmapRender render = new GmapRender();
+				           render.setResolution( width, height );
+				           render.setTempDir( dir.getPath() );
+				           render.setThreads( threads );
+				           render.setRetryPeriod( retry_s );
+				           render.setImageSources( sources );
+				           render.setCoordList( new ArrayList<double[]>(Arrays.asList( centers[n] )), radius_km );
+				           render.setHeading( angles[n] );
+				long t0 = System.nanoTime();
+				BufferedImage image = render.render();
+				if (!encode.equals("none")) { _encode( image, encode ); }
+				latency_ns[n] = System.nanoTime() - t0;
+				render.release(); //one render per GmapRender, its mosaics go back to RasterBudget
+				return( null );
+			}));
+		}
+		int failed = 0;
+		for (Future<?> job : jobs) {
+			try {
+				job.get();
+			} catch (Exception e) {
+				failed += 1;
+				System.err.println("ERR -- LoadTest.run -- Render failed  " + e.getMessage());
+			}
+		}
+		double elapsed_s = (System.nanoTime() - t_start) / 1e9;
+		long   merged    = GmapRender.getTilesMerged() - merged_0;
+		long   upstream  = server.getServed() + server.getFailed() + server.getLimited();
+		pool.shutdown();
+		pool.awaitTermination( 10, TimeUnit.SECONDS );
+		server.stop();
+		_deleteTree( root );
+
+		long[] sorted = Arrays.stream( latency_ns ).filter( ns -> ns > 0 ).toArray(); //failed renders have no latency
+		Arrays.sort( sorted );
+		StringBuilder out = new StringBuilder();
+		out.append( "{\"harness\":\"LoadTest\"" );
+		out.append( String.format( Locale.ROOT, ",\"renders\":%d,\"failed\":%d,\"concurrency\":%d,\"threads\":%d", renders, failed, concurrency, threads) );
+		out.append( String.format( Locale.ROOT, ",\"width\":%d,\"height\":%d,\"layers\":%d,\"view\":\"%s\",\"cold\":%b,\"encode\":\"%s\",\"mode\":\"%s\"", width, height, layers, view, cold, encode, mode) );
+		out.append( String.format( Locale.ROOT, ",\"latency_ms\":%d,\"jitter_ms\":%d,\"error_rate\":%s,\"rate_limit\":%d,\"blank_rate\":%s,\"seed\":%d", latency_ms, jitter_ms, error_rate, rate_limit, blank_rate, seed) );
+		out.append( String.format( Locale.ROOT, ",\"elapsed_s\":%.3f,\"renders_per_sec\":%.3f,\"merged_tiles_per_sec\":%.3f,\"upstream_requests_per_sec\":%.3f",
+		                          elapsed_s, renders/elapsed_s, merged/elapsed_s, upstream/elapsed_s) );
+		out.append( String.format( Locale.ROOT, ",\"upstream_served\":%d,\"upstream_failed\":%d,\"upstream_limited\":%d", server.getServed(), server.getFailed(), server.getLimited()) );
+		out.append( String.format( Locale.ROOT, ",\"raster_budget_mb\":%.1f,\"raster_peak_mb\":%.1f,\"raster_kept_mb\":%.1f", RasterBudget.getLimit()/1048576.0, RasterBudget.getPeak()/1048576.0, RasterBudget.getKept()/1048576.0) );
+		if (proj_points > 0) {
+			double[] ns = _benchProjection( proj_points, VIEW_CENTER );
+			out.append( String.format( Locale.ROOT, ",\"projection_points\":%d,\"projection_ns_per_point\":{\"gmaputils\":%.2f,\"bulk\":%.2f}", proj_points, ns[0], ns[1]) );
+		}
+		out.append( String.format( Locale.ROOT, ",\"render_ms\":{\"p50\":%.3f,\"p99\":%.3f,\"p999\":%.3f,\"max\":%.3f}}",
+		                          _percentile(sorted,0.50)/1e6, _percentile(sorted,0.99)/1e6, _percentile(sorted,0.999)/1e6, _percentile(sorted,1.0)/1e6) );
+		return( out.toString() );
+	}
+
+	//Helpers ==========
+	/**
+	* _benchProjection(int count, double[] center) { return new double[]{gmaputils_ns, bulk_ns}; }
+	* <p>
+	* Notes:<p>
+	* 	Nanoseconds per point to project a count point track at zoom 18, GmapUtils.latlon2abspx(...) per point<p>
+	* 	vs the GmapProjection.latlon2abspx(...) bulk path. Each is run once to warm up, the second run is timed.<p>
+	*/
+	private static double[] _benchProjection(int count, double[] center) {
+		double[] lat   = new double[count];
+		double[] lon   = new double[count];
+		long[]   out_x = new long[count];
+		long[]   out_y = new long[count];
+		for (int i = 0; i<count; i+=1) { lat[i] = center[0] + 1e-6*i; lon[i] = center[1] + 1e-6*i; }
+		long[]   ns    = new long[2];
+		long     sum   = 0;
+		for (int run = 0; run<2; run+=1) {
+			long t0 = System.nanoTime();
+			for (int i = 0; i<count; i+=1) { sum += GmapUtils.latlon2abspx( 18, lat[i], lon[i] )[1]; }
+			long t1 = System.nanoTime();
+			GmapProjection.latlon2abspx( 18, lat, lon, out_x, out_y );
+			long t2 = System.nanoTime();
+			ns[0] = t1 - t0;
+			ns[1] = t2 - t1;
+		}
+		_sink = sum + out_y[0]; //keep the per point loop from being optimized away
+		return( new double[]{ ((double)ns[0])/count, ((double)ns[1])/count } );
+	}
+
+	private static double[] _genCenter(String view, Random random) {
+		if (view.equals("fixed"))   { return( new double[]{ VIEW_CENTER[0], VIEW_CENTER[1] } ); }
+		if (view.equals("hotspot")) { return( new double[]{ VIEW_CENTER[0] + 0.01*random.nextGaussian(), VIEW_CENTER[1] + 0.01*random.nextGaussian() } ); }
+		if (view.equals("uniform")) { return( new double[]{ VIEW_CENTER[0] + random.nextDouble() - 0.5,   VIEW_CENTER[1] + random.nextDouble() - 0.5 } ); }
+		throw new IllegalArgumentException("ERR -- LoadTest._genCenter -- Unknown view distribution " + view);
+	}
+
+	private static byte[] _encode(BufferedImage image, String fmt) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (fmt.equals("jpg")) {
+			BufferedImage rgb = new BufferedImage( image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB ); //jpg writer does not accept alpha
+			              rgb.getGraphics().drawImage( image, 0, 0, null );
+			ImageIO.write( rgb, "jpeg", out );
+		} else {
+			ImageIO.write( image, fmt, out );
+		}
+		return( out.toByteArray() );
+	}
+
+	/**Nearest-rank percentile of sorted values, p within (0,1].*/
+	private static long _percentile(long[] sorted, double p) {
+		if (sorted.length == 0) { return( 0 ); }
+		int i = (int)Math.ceil( p * sorted.length ) - 1;
+		return( sorted[ Math.max( 0, Math.min( sorted.length-1, i ) ) ] );
+	}
+
+	private static void _deleteTree(File fd) {
+		File[] children = fd.listFiles();
+		if (children != null) {
+			for (File child : children) { _deleteTree( child ); }
+		}
+		fd.delete();
+	}
+}
@@ -0,0 +1,271 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+RasterBudget is the process-wide memory budget for full-size render rasters, shared by every GmapRender.<p>
+<p>
+Features:
+	- Renders reserve their estimated raster bytes before allocating, and release them when done.
+	- A reservation that does not fit waits until other renders release, or is refused after a timeout or when cancelled.
+	- Rasters that outlive a render (kept mosaics, decoded tile caches) stay counted until their owner recycles or drops them.
+	- ARGB rasters are backed by pooled int[] buffers, recycled between renders of the same size.
+	- Idle pooled buffers count against the budget, and are dropped first when a reservation needs room.
+*/
+public class RasterBudget {
+	/**Bytes that reserved, kept and idle pooled rasters may use together.*/
+	private static long   _limit    = Runtime.getRuntime().maxMemory() / 2;
+	private static long   _reserved = 0;
+	private static long   _kept     = 0;
+	private static long   _pooled   = 0;
+	private static long   _peak     = 0;
+	private static final  HashMap<Integer,ArrayDeque<int[]>> _pool = new HashMap<>();
+	/**Buffers counted by keep(BufferedImage), by identity, until recycle(...) is called on them.*/
+	private static final  Set<int[]> _kept_bufs = Collections.newSetFromMap( new IdentityHashMap<int[],Boolean>() );
+	private static final  Object _lock  = new Object();
+	private static final  int[]  _masks = {0x00FF0000, 0x0000FF00, 0x000000FF, 0xFF000000}; //TYPE_INT_ARGB
+
+	//Setters ==========
+	/**
+	* RasterBudget::setLimit(long bytes) {return;}
+	* <p>
+	* Notes:<p>
+	* 	Sets the budget (default: half the maximum heap), waiting reservations are re-checked.<p>
+	*/
+	public static void setLimit(long bytes) {
+		if (bytes <= 0) { throw new IllegalArgumentException("ERR -- RasterBudget.setLimit -- Limit must be positive."); }
+		synchronized (_lock) {
+			_limit = bytes;
+			_lock.notifyAll();
+		}
+	}
+
+	/**
+	* RasterBudget::reserve(long bytes, long timeout_ms) { return boolean; }
+	* <p>
+	* Notes:<p>
+	* 	reserve(bytes, timeout_ms, stop) that is never stopped.<p>
+	*/
+	public static boolean reserve(long bytes, long timeout_ms) {
+		return( reserve( bytes, timeout_ms, () -> false ) );
+	}
+
+	/**
+	* RasterBudget::reserve(long bytes, long timeout_ms, BooleanSupplier stop) { return boolean; }
+	* <p>
+	* Notes:<p>
+	* 	Reserves bytes of the budget, dropping idle pooled buffers if they are in the way.<p>
+	* 	Waits up to timeout_ms (0 = do not wait) for other reservations or kept rasters to be released.<p>
+	* 	Returns false if the reservation could not be made, or can never fit in the limit.<p>
+	* 	Throws CancellationException once stop returns true, call wake() after setting what stop reads.<p>
+	*/
+	public static boolean reserve(long bytes, long timeout_ms, BooleanSupplier stop) {
+		long deadline = System.nanoTime() + timeout_ms * 1000000L;
+		synchronized (_lock) {
+			while (true) {
+				if (stop.getAsBoolean()) { throw new CancellationException("ERR -- RasterBudget.reserve -- Reservation cancelled."); }
+				if (bytes > _limit) { return( false ); }
+				if (_reserved + _kept + bytes + _pooled > _limit) { _drainPool( _reserved + _kept + bytes + _pooled - _limit ); }
+				if (_reserved + _kept + bytes <= _limit) {
+					_reserved += bytes;
+					_peak      = Math.max( _peak, _reserved + _kept );
+					return( true );
+				}
+				long wait_ms = (deadline - System.nanoTime()) / 1000000L;
+				if (wait_ms <= 0) { return( false ); }
+				try {
+					_lock.wait( wait_ms );
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return( false );
+				}
+			}
+		}
+	}
+
+	/**
+	* RasterBudget::wake() {return;}
+	* <p>
+	* Notes:<p>
+	* 	Makes waiting reservations check their stop condition again.<p>
+	*/
+	public static void wake() {
+		synchronized (_lock) { _lock.notifyAll(); }
+	}
+
+	/**
+	* RasterBudget::release(long bytes) {return;}
+	* <p>
+	* Notes:<p>
+	* 	Gives back reserved bytes, throws IllegalStateException if more are released than are reserved.<p>
+	*/
+	public static void release(long bytes) {
+		synchronized (_lock) {
+			if ((bytes<0)||(bytes>_reserved)) { throw new IllegalStateException("ERR -- RasterBudget.release -- Releasing " + bytes + " bytes, " + _reserved + " reserved."); }
+			_reserved -= bytes;
+			_lock.notifyAll();
+		}
+	}
+
+	/**
+	* RasterBudget::keep(BufferedImage img) {return;}
+	* <p>
+	* Notes:<p>
+	* 	Moves an image(...)'s bytes from the caller's reservation to kept, for a raster that outlives the render,<p>
+	* 	such as a mosaic kept between renders. The caller releases that much less of its reservation.<p>
+	* 	The image stays counted until its owner calls recycle(...) on it, an owner dropped without recycling it leaks its bytes.<p>
+	* 	Throws IllegalStateException if the image is already kept, or fewer bytes than it holds are reserved.<p>
+	*/
+	public static void keep(BufferedImage img) {
+		int[] buf = _buffer( img );
+		if (buf == null) { return; }
+		synchronized (_lock) {
+			if (4L*buf.length > _reserved) { throw new IllegalStateException("ERR -- RasterBudget.keep -- Keeping " + 4L*buf.length + " bytes, " + _reserved + " reserved."); }
+			if (!_kept_bufs.add( buf ))    { throw new IllegalStateException("ERR -- RasterBudget.keep -- Image is already kept."); }
+			_reserved -= 4L * buf.length;
+			_kept     += 4L * buf.length;
+			_peak     = Math.max( _peak, _reserved + _kept );
+		}
+	}
+
+	/**
+	* RasterBudget::tryKeep(long bytes) { return boolean; }
+	* <p>
+	* Notes:<p>
+	* 	Counts bytes held by a cache, if they fit in the budget now (idle pooled buffers are dropped for them).<p>
+	* 	Returns false without waiting if they do not, the cache should then not keep the raster.<p>
+	* 	The cache gives the bytes back with drop(bytes) when it evicts the raster.<p>
+	*/
+	public static boolean tryKeep(long bytes) {
+		synchronized (_lock) {
+			if (_reserved + _kept + bytes + _pooled > _limit) { _drainPool( _reserved + _kept + bytes + _pooled - _limit ); }
+			if (_reserved + _kept + bytes > _limit) { return( false ); }
+			_kept += bytes;
+			_peak  = Math.max( _peak, _reserved + _kept );
+			return( true );
+		}
+	}
+
+	/**
+	* RasterBudget::drop(long bytes) {return;}
+	* <p>
+	* Notes:<p>
+	* 	Gives back bytes counted by tryKeep(...), throws IllegalStateException if more are dropped than are kept.<p>
+	*/
+	public static void drop(long bytes) {
+		synchronized (_lock) {
+			if ((bytes<0)||(bytes>_kept)) { throw new IllegalStateException("ERR -- RasterBudget.drop -- Dropping " + bytes + " bytes, " + _kept + " kept."); }
+			_kept -= bytes;
+			_lock.notifyAll();
+		}
+	}
+
+	//Getters ==========
+	public static long getLimit()    { synchronized (_lock) { return( _limit );    } }
+	public static long getReserved() { synchronized (_lock) { return( _reserved ); } }
+	public static long getKept()     { synchronized (_lock) { return( _kept );     } }
+	public static long getPooled()   { synchronized (_lock) { return( _pooled );   } }
+	/**Highest reserved plus kept bytes seen since the last resetPeak().*/
+	public static long getPeak()     { synchronized (_lock) { return( _peak );     } }
+	public static void resetPeak()   { synchronized (_lock) { _peak = _reserved + _kept; } }
+
+	/**
+	* RasterBudget::bytes(int width, int height) { return (long)bytes; }
+	* <p>
+	* Notes:<p>
+	* 	Size of one ARGB raster, for building reservation estimates.<p>
+	*/
+	public static long bytes(int width, int height) {
+		return( 4L * width * height );
+	}
+
+	/**
+	* RasterBudget::bytes(BufferedImage img) { return (long)bytes; }
+	* <p>
+	* Notes:<p>
+	* 	Size of the data behind any image, for counting rasters not made by image(...), such as decoded tiles.<p>
+	*/
+	public static long bytes(BufferedImage img) {
+		DataBuffer data = img.getRaster().getDataBuffer();
+		return( (long)data.getSize() * data.getNumBanks() * DataBuffer.getDataTypeSize( data.getDataType() ) / 8 );
+	}
+
+	/**
+	* RasterBudget::image(int width, int height) { return new BufferedImage(TYPE_INT_ARGB); }
+	* <p>
+	* Notes:<p>
+	* 	A transparent TYPE_INT_ARGB image, backed by a pooled buffer when one of the right size is idle.<p>
+	* 	The caller must have reserved its bytes, and should recycle(...) it once no longer used.<p>
+	*/
+	public static BufferedImage image(int width, int height) {
+		int   len = width * height;
+		int[] buf = null;
+		synchronized (_lock) {
+			ArrayDeque<int[]> free = _pool.get( len );
+			if ((free != null)&&(!free.isEmpty())) {
+				buf      = free.pop();
+				_pooled -= 4L * len;
+			}
+		}
+		if (buf == null) { buf = new int[len]; }
+		else             { Arrays.fill( buf, 0 ); }
+		WritableRaster raster = Raster.createPackedRaster( new DataBufferInt( buf, len ), width, height, width, _masks, null );
+		return( new BufferedImage( ColorModel.getRGBdefault(), raster, false, null ) );
+	}
+
+	/**
+	* RasterBudget::recycle(BufferedImage img) {return;}
+	* <p>
+	* Notes:<p>
+	* 	Returns the buffer behind an image(...) (or a subimage of one) to the pool, it stops counting if kept.<p>
+	* 	Neither the image nor any subimage of it may be used afterwards.<p>
+	* 	Buffers that would push the pool past the limit are left to the garbage collector.<p>
+	*/
+	public static void recycle(BufferedImage img) {
+		int[] buf = _buffer( img );
+		if (buf == null) { return; }
+		synchronized (_lock) {
+			if (_kept_bufs.remove( buf )) {
+				_kept -= 4L * buf.length;
+				_lock.notifyAll();
+			}
+			if (_reserved + _kept + _pooled + 4L*buf.length > _limit) { return; }
+			_pool.computeIfAbsent( buf.length, k -> new ArrayDeque<>() ).push( buf );
+			_pooled += 4L * buf.length;
+		}
+	}
+
+	//Helpers ==========
+	private static int[] _buffer(BufferedImage img) {
+		if (img == null) { return( null ); }
+		DataBuffer data = img.getRaster().getDataBuffer();
+		return( (data instanceof DataBufferInt) ? ((DataBufferInt)data).getData() : null );
+	}
+
+	/**Drops idle pooled buffers until at least bytes are freed or the pool is empty, caller holds _lock.*/
+	private static void _drainPool(long bytes) {
+		long freed = 0;
+		for (ArrayDeque<int[]> free : _pool.values()) {
+			while ((freed < bytes)&&(!free.isEmpty())) {
+				freed += 4L * free.pop().length;
+			}
+		}
+		_pooled -= freed;
+	}
+
+	public static void main(String[] args) {
+		System.out.println("MSG -- RasterBudget -- No tests implimented here.");
+		return;
+	}
+}
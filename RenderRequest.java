@@ -0,0 +1,116 @@
+import java.util.ArrayList;
+
+/**
+RenderRequest is an immutable description of one render, for GmapRender.renderAsync(...).<p>
+<p>
+Holds the same values as the GmapRender setters: resolution, coordinates, heading, sources, compass overlay, tile folder,<p>
+retry period and user agent.<p>
+The with...(...) methods return a modified copy, the original is never changed, so one request may be shared between threads.<p>
+*/
+public final class RenderRequest {
+	private final int                   _width;
+	private final int                   _height;
+	private final ArrayList<double[]>   _coords;
+	private final double                _radius_km;
+	private final double                _heading;
+	private final ArrayList<TileSource> _sources;
+	private final int[]                 _compass_size;
+	private final int[]                 _compass_position;
+	private final String                _compass_icon;
+	private final String                _temp_path;
+	private final int                   _retry_after;
+	private final String                _user_agent;
+
+	//Constructor ==========
+	/**
+	* new RenderRequest(int width, int height, ArrayList<double[]> coords, double radius_km, double heading, ArrayList<TileSource> sources)
+	* <p>
+	* @param width     Output resolution, see GmapRender.setResolution(...).
+	* @param height    Output resolution.
+	* @param coords    Region to render as {lat,lon} pairs, see GmapRender.setCoordList(...).
+	* @param radius_km Radius used when coords holds a single point.
+	* @param heading   Rotation in degrees, see GmapRender.setHeading(...).
+	* @param sources   Map sources, bottom layer first, see GmapRender.setImageSources(...).
+	*/
+	public RenderRequest(int width, int height, ArrayList<double[]> coords, double radius_km, double heading, ArrayList<TileSource> sources) {
+		this( width, height, coords, radius_km, heading, sources, new int[]{0,0}, new int[]{0,0}, "", ".", 900, "Mozilla/5.0" );
+	}
+
+	private RenderRequest(int width, int height, ArrayList<double[]> coords, double radius_km, double heading, ArrayList<TileSource> sources,
+	                      int[] compass_size, int[] compass_position, String compass_icon, String temp_path, int retry_after, String user_agent) {
+		if ((width<=0)||(height<=0))            { throw new IllegalArgumentException("ERR -- RenderRequest -- Resolution must be positive."); }
+		if ((coords==null)||(coords.size()<=0)) { throw new IllegalArgumentException("ERR -- RenderRequest -- No coordinates given."); }
+		if ((sources==null)||(sources.size()<=0)) { throw new IllegalArgumentException("ERR -- RenderRequest -- No image sources given."); }
+		if (retry_after<0)                      { throw new IllegalArgumentException("ERR -- RenderRequest -- Retry period must not be negative."); }
+		if (user_agent==null)                   { throw new IllegalArgumentException("ERR -- RenderRequest -- No user agent given."); }
+		this._width            = width;
+		this._height           = height;
+		this._coords           = new ArrayList<>();
+		for (double[] coord : coords) { this._coords.add( coord.clone() ); } //deep copy, callers may reuse their arrays
+		this._radius_km        = radius_km;
+		this._heading          = heading;
+		this._sources          = new ArrayList<>(sources); //TileSource is immutable
+		this._compass_size     = compass_size.clone();
+		this._compass_position = compass_position.clone();
+		this._compass_icon     = new String(compass_icon);
+		this._temp_path        = (temp_path.length()<=0) ? new String(".") : new String(temp_path);
+		this._retry_after      = retry_after;
+		this._user_agent       = new String(user_agent);
+	}
+
+	//Copies ==========
+	/**
+	* this.withCompass(int[] size={wid,hei}, int[] position={x,y}, String icon_file) { return RenderRequest; }
+	* <p>
+	* Notes:<p>
+	* 	See GmapRender.setCompassOverlay(...), icon_file "" disables the compass.<p>
+	*/
+	public RenderRequest withCompass(int[] size, int[] position, String icon_file) {
+		return( new RenderRequest( this._width, this._height, this._coords, this._radius_km, this._heading, this._sources, size, position, icon_file, this._temp_path, this._retry_after, this._user_agent ) );
+	}
+
+	public RenderRequest withHeading(double heading) {
+		return( new RenderRequest( this._width, this._height, this._coords, this._radius_km, heading, this._sources, this._compass_size, this._compass_position, this._compass_icon, this._temp_path, this._retry_after, this._user_agent ) );
+	}
+
+	public RenderRequest withTempDir(String path) {
+		return( new RenderRequest( this._width, this._height, this._coords, this._radius_km, this._heading, this._sources, this._compass_size, this._compass_position, this._compass_icon, path, this._retry_after, this._user_agent ) );
+	}
+
+	/**
+	* this.withRetryPeriod(int retry_after) { return RenderRequest; }
+	* <p>
+	* Notes:<p>
+	* 	Seconds before a failed tile download is tried again (default=900), see GmapRender.setRetryPeriod(...).<p>
+	*/
+	public RenderRequest withRetryPeriod(int retry_after) {
+		return( new RenderRequest( this._width, this._height, this._coords, this._radius_km, this._heading, this._sources, this._compass_size, this._compass_position, this._compass_icon, this._temp_path, retry_after, this._user_agent ) );
+	}
+
+	public RenderRequest withUserAgent(String user_agent) {
+		return( new RenderRequest( this._width, this._height, this._coords, this._radius_km, this._heading, this._sources, this._compass_size, this._compass_position, this._compass_icon, this._temp_path, this._retry_after, user_agent ) );
+	}
+
+	//Getters ==========
+	public int                   getWidth()           { return( this._width ); }
+	public int                   getHeight()          { return( this._height ); }
+	public double                getRadiusKm()        { return( this._radius_km ); }
+	public double                getHeading()         { return( this._heading ); }
+	public String                getCompassIcon()     { return( this._compass_icon ); }
+	public String                getTempDir()         { return( this._temp_path ); }
+	public int                   getRetryPeriod()     { return( this._retry_after ); }
+	public String                getUserAgent()       { return( this._user_agent ); }
+	public int[]                 getCompassSize()     { return( this._compass_size.clone() ); }
+	public int[]                 getCompassPosition() { return( this._compass_position.clone() ); }
+	public ArrayList<TileSource> getSources()         { return( new ArrayList<>(this._sources) ); }
+	public ArrayList<double[]>   getCoords() {
+		ArrayList<double[]> out = new ArrayList<>();
+		for (double[] coord : this._coords) { out.add( coord.clone() ); }
+		return( out );
+	}
+
+	public static void main(String[] args) {
+		System.out.println("MSG -- RenderRequest -- No tests implimented here.");
+		return;
+	}
+}
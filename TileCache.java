@@ -0,0 +1,201 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+TileCache is the on-disk tile store, tile payloads are kept once per unique content.<p>
+<p>
+Layout, for a tile file name such as ./1_33623_48729_17.jpg:
+	- ./blobs/[hash].jpg           The tile payload, stored once per unique content.
+	- ./1_33623_48729_17.jpg       A hard link to its blob, so identical tiles share one inode and its data blocks.
+<p>
+Open ocean, empty land and blank label tiles are byte-identical, so they cost one file's blocks on disk<p>
+and (through GmapRender) one decoded raster. Tiles are still ordinary files to anything reading the folder.<p>
+A plain tile file, left by an older cache layout, is linked into a blob the first time it is looked up.<p>
+Where hard links are not supported, tiles are plain files and lookup(...) keys them by content hash instead.<p>
+Blobs no tile links to any more are deleted by clean(dir).<p>
+*/
+public class TileCache {
+	/**Blob folder name, inside the tile folder.*/
+	public static String BLOB_DIR = "blobs";
+	private static final AtomicLong  _part_seq = new AtomicLong();
+	/**Blob folders where hard links failed, tiles there are written as plain files.*/
+	private static final Set<String> _no_links = ConcurrentHashMap.newKeySet();
+
+	/**
+	* TileCache::lookup(String fname) { return String key; }
+	* <p>
+	* Notes:<p>
+	* 	Returns a content key for the tile, or null if the tile has not been downloaded.<p>
+	* 	Tiles linked to the same blob get the same key (the blob's device, inode, size and time), from a single stat.<p>
+	* 	Without hard links the key is the content hash, which needs the file read.<p>
+	* 	A plain tile is linked into a blob once, if it still has a single link afterwards it is keyed by content hash.<p>
+	*/
+	public static String lookup(String fname) throws IOException {
+		return( _lookup( fname, true ) );
+	}
+
+	private static String _lookup(String fname, boolean adopt) throws IOException {
+		File               tile = new File( fname );
+		Map<String,Object> attr = _unixAttributes( tile.toPath() );
+		if ((attr == null)||(_no_links.contains( _blobDir( tile ).getPath() ))) {
+			return( tile.isFile() ? hash( Files.readAllBytes( tile.toPath() ) ) : null );
+		}
+		if (attr.isEmpty()) { return( null ); }
+		if (((Integer)attr.get("nlink")) < 2) {
+			byte[] data = Files.readAllBytes( tile.toPath() );
+			if (!adopt) { return( hash( data ) ); } //filesystem does not report the link, do not try again
+			put( fname, data ); //plain file, move its bytes into a blob
+			return( _lookup( fname, false ) );
+		}
+		return( attr.get("dev") + ":" + attr.get("ino") + ":" + attr.get("size") + ":" + ((FileTime)attr.get("lastModifiedTime")).toMillis() );
+	}
+
+	/**
+	* TileCache::put(String fname, byte[] data) { return String hash; }
+	* <p>
+	* Notes:<p>
+	* 	Stores the tile payload as a blob (if no identical blob exists yet) and hard links the tile to it.<p>
+	* 	Both files are written or linked under a temporary name and moved into place, readers never see a partial file.<p>
+	* 	An existing blob is never replaced, so concurrent puts of the same content all link to the same one.<p>
+	* 	A replaced tile's blob is deleted if no other tile links to it.<p>
+	*/
+	public static String put(String fname, byte[] data) throws IOException {
+		String hash = hash( data );
+		File   tile = new File( fname );
+		File   blob = blobFile( fname, hash );
+		if (_no_links.contains( blob.getParent() )) {
+			_writeAtomic( tile, data );
+			return( hash );
+		}
+		File   old  = tile.isFile() ? blobFile( fname, hash( Files.readAllBytes( tile.toPath() ) ) ) : null; //blob of the tile being replaced
+		for (int attempt = 0; ; attempt+=1) {
+			File part = new File( fname + ".part" + _part_seq.getAndIncrement() );
+			try {
+				if (!blob.isFile()) {
+					blob.getParentFile().mkdirs();
+					_createBlob( blob, data );
+				}
+				Files.createLink( part.toPath(), blob.toPath() );
+			} catch (NoSuchFileException e) {
+				if (attempt < 2) { continue; } //blob removed by clean(...) in between, write it again
+				throw e;
+			} catch (IOException | UnsupportedOperationException e) {
+				System.err.println("ERR -- TileCache.put -- Hard links unavailable in " + blob.getParent() + ", storing plain tiles  " + e.getMessage());
+				_no_links.add( blob.getParent() );
+				blob.delete();
+				_writeAtomic( tile, data );
+				return( hash );
+			}
+			Files.move( part.toPath(), tile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+			break;
+		}
+		if ((old != null)&&(!old.equals( blob ))) { _deleteOrphan( old ); }
+		return( hash );
+	}
+
+	/**
+	* TileCache::clean(String dir) { return (int)deleted; }
+	* <p>
+	* Notes:<p>
+	* 	Deletes blobs in the tile folder dir that no tile links to, for example after tile files were deleted.<p>
+	* 	Safe to run while tiles are being stored, put(...) writes a blob again if it was removed under it.<p>
+	*/
+	public static int clean(String dir) throws IOException {
+		File[] blobs = new File( dir, BLOB_DIR ).listFiles();
+		int    count = 0;
+		if (blobs == null) { return( 0 ); }
+		for (File blob : blobs) {
+			if ((!blob.getName().contains(".part"))&&(_deleteOrphan( blob ))) { count += 1; }
+		}
+		return( count );
+	}
+
+	/**
+	* TileCache::blobFile(String fname, String hash) { return File; }
+	* <p>
+	* Notes:<p>
+	* 	Blob location for a tile file name and content hash, the blob keeps the tile's extension.<p>
+	*/
+	public static File blobFile(String fname, String hash) {
+		File   fd   = new File( fname );
+		String name = fd.getName();
+		int    dot  = name.lastIndexOf('.');
+		String ext  = (dot >= 0) ? name.substring(dot) : "";
+		return( new File( _blobDir( fd ), hash + ext ) );
+	}
+
+	/**
+	* TileCache::hash(byte[] data) { return String sha256_hex; }
+	*/
+	public static String hash(byte[] data) {
+		try {
+			byte[]        sum = MessageDigest.getInstance( "SHA-256" ).digest( data );
+			StringBuilder hex = new StringBuilder( sum.length*2 );
+			for (byte b : sum) { hex.append( String.format("%02x", b & 0xFF) ); }
+			return( hex.toString() );
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("ERR -- TileCache.hash -- SHA-256 unavailable  " + e.getMessage());
+		}
+	}
+
+	//Helpers ==========
+	private static File _blobDir(File tile) {
+		return( new File( tile.getAbsoluteFile().getParentFile(), BLOB_DIR ) );
+	}
+
+	/**unix attributes of path, empty if it does not exist, null if the filesystem has no unix view.*/
+	private static Map<String,Object> _unixAttributes(Path path) throws IOException {
+		try {
+			return( Files.readAttributes( path, "unix:dev,ino,nlink,size,lastModifiedTime" ) );
+		} catch (NoSuchFileException e) {
+			return( Collections.emptyMap() );
+		} catch (UnsupportedOperationException | IllegalArgumentException e) {
+			return( null );
+		}
+	}
+
+	/**Deletes blob if it is the only link to its data, returns true if deleted.*/
+	private static boolean _deleteOrphan(File blob) throws IOException {
+		Map<String,Object> attr = _unixAttributes( blob.toPath() );
+		if ((attr == null)||(attr.isEmpty())||(((Integer)attr.get("nlink")) > 1)) { return( false ); }
+		return( blob.delete() );
+	}
+
+	/**Writes blob under a temporary name and links it into place, a blob another put(...) created first is kept.*/
+	private static void _createBlob(File blob, byte[] data) throws IOException {
+		File part = new File( blob.getPath() + ".part" + _part_seq.getAndIncrement() );
+		try {
+			try (FileOutputStream out = new FileOutputStream( part )) { out.write( data ); }
+			Files.createLink( blob.toPath(), part.toPath() ); //unlike a rename, a link never replaces an existing blob
+		} catch (FileAlreadyExistsException e) {
+			//same content, written by a concurrent put(...)
+		} finally {
+			part.delete();
+		}
+	}
+
+	private static void _writeAtomic(File fd, byte[] data) throws IOException {
+		File part = new File( fd.getPath() + ".part" + _part_seq.getAndIncrement() );
+		try (FileOutputStream out = new FileOutputStream( part )) { out.write( data ); }
+		Files.move( part.toPath(), fd.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+	}
+
+	public static void main(String[] args) {
+		System.out.println("MSG -- TileCache -- No tests implimented here.");
+		return;
+	}
+}
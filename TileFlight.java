@@ -0,0 +1,109 @@
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+TileFlight() coalesces concurrent requests for the same tile into a single job.<p>
+<p>
+Features:
+	- The first caller for a key runs the loader, every other caller waits on the same future.
+	- Successful results are not kept, the key is released as soon as the job completes,
+	  so loaders should check their own cache first for callers that arrive after that.
+	- Failures are handed to all waiters, and kept for fail_ttl_ms so a broken tile is not retried by every caller.
+	- Expired failures are swept out by fetch(...) at most every SWEEP_MS, whichever key it is called for.
+*/
+public class TileFlight<V> {
+	private final ConcurrentHashMap<String, Flight<V>> _flights = new ConcurrentHashMap<>();
+	private final long                                  _fail_ttl_ms;
+	private final AtomicLong                            _next_sweep  = new AtomicLong( System.nanoTime() );
+	/**Milliseconds between sweeps for expired failures.*/
+	public static long SWEEP_MS = 1000;
+
+	/**One in-flight (or recently failed) job.*/
+	private static class Flight<V> {
+		final CompletableFuture<V> future  = new CompletableFuture<>();
+		volatile long              expires = Long.MAX_VALUE; //System.nanoTime() after which a failure may be retried
+	}
+
+	//Constructor ==========
+	/**
+	* new TileFlight(long fail_ttl_ms)
+	* <p>
+	* @param fail_ttl_ms Milliseconds a failed result is handed out before the loader is allowed to run again.
+	*/
+	public TileFlight(long fail_ttl_ms) {
+		if (fail_ttl_ms < 0) { throw new IllegalArgumentException("ERR -- TileFlight -- Negative failure TTL."); }
+		this._fail_ttl_ms = fail_ttl_ms;
+	}
+
+	//Getters ==========
+	/**
+	* this.fetch(String key, Callable<V> loader) { return CompletableFuture<V>; }
+	* <p>
+	* Notes:<p>
+	* 	If no job is in flight for key, loader is run on the calling thread and its result completes the future.<p>
+	* 	Otherwise the in-flight future is returned, and loader is not run.<p>
+	* 	A failed future is returned until fail_ttl_ms has passed, then the next caller runs loader again.<p>
+	*/
+	public CompletableFuture<V> fetch(String key, Callable<V> loader) {
+		return( this.fetch( key, loader, this._fail_ttl_ms ) );
+	}
+
+	/**
+	* this.fetch(String key, Callable<V> loader, long fail_ttl_ms) { return CompletableFuture<V>; }
+	* <p>
+	* Notes:<p>
+	* 	See fetch(key,loader) for details, fail_ttl_ms overrides the constructor value for a failure of this job.<p>
+	*/
+	public CompletableFuture<V> fetch(String key, Callable<V> loader, long fail_ttl_ms) {
+		this._sweep();
+		while (true) {
+			Flight<V> mine = new Flight<>();
+			Flight<V> cur  = this._flights.putIfAbsent( key, mine );
+			if (cur != null) {
+				if ((cur.future.isCompletedExceptionally())&&(System.nanoTime() - cur.expires >= 0)) {
+					this._flights.remove( key, cur );
+					continue;
+				}
+				return( cur.future );
+			}
+			try {
+				V val = loader.call();
+				mine.future.complete( val ); //complete before removing, so no caller can start a second load in between
+				this._flights.remove( key, mine );
+			} catch (Throwable e) {
+				mine.expires = System.nanoTime() + fail_ttl_ms * 1000000L;
+				mine.future.completeExceptionally( e );
+				if (fail_ttl_ms <= 0) { this._flights.remove( key, mine ); }
+			}
+			return( mine.future );
+		}
+	}
+
+	/**
+	* this.inFlight() { return (int)count; }
+	* <p>
+	* Notes:<p>
+	* 	Count of keys currently running or holding a cached failure.<p>
+	*/
+	public int inFlight() { return( this._flights.size() ); }
+
+	//Helpers ==========
+	/**Drops failures whose TTL has passed, so keys that are never fetched again do not stay in the map.*/
+	private void _sweep() {
+		long now  = System.nanoTime();
+		long next = this._next_sweep.get();
+		if ((now - next < 0)||(!this._next_sweep.compareAndSet( next, now + SWEEP_MS * 1000000L ))) { return; }
+		for (Map.Entry<String, Flight<V>> entry : this._flights.entrySet()) {
+			Flight<V> flight = entry.getValue();
+			if ((flight.future.isCompletedExceptionally())&&(now - flight.expires >= 0)) { this._flights.remove( entry.getKey(), flight ); }
+		}
+	}
+
+	public static void main(String[] args) {
+		System.out.println("MSG -- TileFlight -- No tests implimented here.");
+		return;
+	}
+}
@@ -0,0 +1,183 @@
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+TileMosaic() is a persistent layer raster for one map source, a window of tiles around the current view.<p>
+<p>
+Tiles are drawn into the raster once and stay there while the view moves inside the window.<p>
+When the view leaves the window, the pixels are shifted (one System.arraycopy) to re-center it,<p>
+and only the newly exposed rows and columns are left to draw, every other tile is kept.<p>
+A zoom change, or a view larger than the window, starts over with an empty raster.<p>
+Not thread safe, each GmapRender keeps its own mosaics.<p>
+*/
+public class TileMosaic {
+	private final int       _margin;
+	private BufferedImage   _image;
+	private int[]           _pixels;
+	private Graphics        _graph;
+	private boolean[]       _drawn  = new boolean[0]; //per cell, row major
+	private int             _x0     = 0;  //tile at the raster's top-left cell
+	private int             _y0     = 0;
+	private int             _cols   = 0;
+	private int             _rows   = 0;
+	private int             _zoom   = -1;
+
+	//Constructor ==========
+	/**
+	* new TileMosaic(int margin)
+	* <p>
+	* @param margin Extra tiles kept on each side of the view, so small pans do not shift the raster.
+	*/
+	public TileMosaic(int margin) {
+		if (margin < 0) { throw new IllegalArgumentException("ERR -- TileMosaic -- Negative margin."); }
+		this._margin = margin;
+	}
+
+	//Setters ==========
+	/**
+	* this.moveTo(int x_min, int x_max, int y_min, int y_max, int zoom) {return;}
+	* <p>
+	* Notes:<p>
+	* 	Makes sure the tile range (inclusive) is inside the window, shifting or replacing the raster if needed.<p>
+	* 	Tiles still inside the window keep their pixels, the rest of the window is transparent and undrawn.<p>
+	* 	A replaced raster is handed back to RasterBudget.recycle(...), subimages of it must no longer be used.<p>
+	* 	The caller reserves bytesToFit(...) for a new raster first, and may RasterBudget.keep(...) it, release() stops counting it.<p>
+	*/
+	public void moveTo(int x_min, int x_max, int y_min, int y_max, int zoom) {
+		int cols = x_max - x_min + 1;
+		int rows = y_max - y_min + 1;
+		if (this.bytesToFit( x_min, x_max, y_min, y_max, zoom ) > 0) {
+			this.release();
+			this._cols   = cols + 2*this._margin;
+			this._rows   = rows + 2*this._margin;
+			this._image  = RasterBudget.image( this._cols*GmapUtils.TILE_SIZE, this._rows*GmapUtils.TILE_SIZE );
+			this._pixels = ((DataBufferInt)this._image.getRaster().getDataBuffer()).getData();
+			this._graph  = this._image.getGraphics();
+			this._drawn  = new boolean[this._cols * this._rows];
+			this._x0     = x_min - this._margin;
+			this._y0     = y_min - this._margin;
+			this._zoom   = zoom;
+			return;
+		}
+		if ((zoom==this._zoom)&&(x_min>=this._x0)&&(x_max<this._x0+this._cols)&&(y_min>=this._y0)&&(y_max<this._y0+this._rows)) { return; }
+		int nx0 = x_min - (this._cols - cols)/2; //re-center the view in the window
+		int ny0 = y_min - (this._rows - rows)/2;
+		if (zoom != this._zoom) {
+			Arrays.fill( this._pixels, 0 );
+			Arrays.fill( this._drawn, false );
+			this._zoom = zoom;
+		} else {
+			this._shift( this._x0 - nx0, this._y0 - ny0 );
+		}
+		this._x0 = nx0;
+		this._y0 = ny0;
+	}
+
+	/**
+	* this.draw(int x, int y, BufferedImage tile) {return;}
+	* <p>
+	* Notes:<p>
+	* 	Draws a tile into its cell and marks it drawn, tiles outside the window are ignored.<p>
+	*/
+	public void draw(int x, int y, BufferedImage tile) {
+		int i = this._cell( x, y );
+		if (i < 0) { return; }
+		this._graph.drawImage( tile, (x-this._x0)*GmapUtils.TILE_SIZE, (y-this._y0)*GmapUtils.TILE_SIZE, null );
+		this._drawn[i] = true;
+	}
+
+	/**
+	* this.release() {return;}
+	* <p>
+	* Notes:<p>
+	* 	Drops the raster (back to RasterBudget's pool, no longer counted as kept) and every drawn tile.<p>
+	*/
+	public void release() {
+		if (this._graph != null) { this._graph.dispose(); }
+		RasterBudget.recycle( this._image );
+		this._image  = null;
+		this._pixels = null;
+		this._graph  = null;
+		this._drawn  = new boolean[0];
+		this._cols   = 0;
+		this._rows   = 0;
+		this._zoom   = -1;
+	}
+
+	//Getters ==========
+	/**
+	* this.has(int x, int y, int zoom) { return boolean; }
+	* <p>
+	* Notes:<p>
+	* 	True if tile (x,y,zoom) is drawn in the raster.<p>
+	*/
+	public boolean has(int x, int y, int zoom) {
+		int i = this._cell( x, y );
+		return( (zoom==this._zoom)&&(i >= 0)&&(this._drawn[i]) );
+	}
+
+	/**
+	* this.bytesToFit(int x_min, int x_max, int y_min, int y_max, int zoom) { return (long)bytes; }
+	* <p>
+	* Notes:<p>
+	* 	Size of the raster moveTo(...) would allocate for this range, 0 if the current raster is reused.<p>
+	*/
+	public long bytesToFit(int x_min, int x_max, int y_min, int y_max, int zoom) {
+		int cols = x_max - x_min + 1;
+		int rows = y_max - y_min + 1;
+		if ((this._image != null)&&(cols <= this._cols)&&(rows <= this._rows)) { return( 0 ); }
+		return( RasterBudget.bytes( (cols + 2*this._margin)*GmapUtils.TILE_SIZE, (rows + 2*this._margin)*GmapUtils.TILE_SIZE ) );
+	}
+
+	/**The raster, or null before the first moveTo(...). Read only, tile (getX(),getY()) is at pixel (0,0).*/
+	public BufferedImage getImage() { return( this._image ); }
+	public int           getX()     { return( this._x0 ); }
+	public int           getY()     { return( this._y0 ); }
+
+	//Helpers ==========
+	private int _cell(int x, int y) {
+		int c = x - this._x0;
+		int r = y - this._y0;
+		if ((c<0)||(c>=this._cols)||(r<0)||(r>=this._rows)) { return( -1 ); }
+		return( r*this._cols + c );
+	}
+
+	/**Moves the raster content by (dx,dy) cells, exposed cells are cleared and marked undrawn.*/
+	private void _shift(int dx, int dy) {
+		boolean[] drawn = new boolean[this._drawn.length];
+		if ((Math.abs(dx) < this._cols)&&(Math.abs(dy) < this._rows)) {
+			int width = this._cols * GmapUtils.TILE_SIZE;
+			int off   = dy*GmapUtils.TILE_SIZE*width + dx*GmapUtils.TILE_SIZE;
+			if (off > 0) { System.arraycopy( this._pixels, 0, this._pixels, off, this._pixels.length - off ); }
+			else         { System.arraycopy( this._pixels, -off, this._pixels, 0, this._pixels.length + off ); } //pixels wrapped across rows land in exposed cells
+			for (int r = 0; r<this._rows; r+=1) {
+				for (int c = 0; c<this._cols; c+=1) {
+					int oc = c - dx;
+					int or = r - dy;
+					drawn[r*this._cols + c] = (oc>=0)&&(oc<this._cols)&&(or>=0)&&(or<this._rows)&&(this._drawn[or*this._cols + oc]);
+				}
+			}
+		}
+		this._drawn = drawn;
+		for (int r = 0; r<this._rows; r+=1) {
+			for (int c = 0; c<this._cols; c+=1) {
+				if (!drawn[r*this._cols + c]) { this._clearCell( c, r ); }
+			}
+		}
+	}
+
+	private void _clearCell(int c, int r) {
+		int width = this._cols * GmapUtils.TILE_SIZE;
+		int start = r*GmapUtils.TILE_SIZE*width + c*GmapUtils.TILE_SIZE;
+		for (int row = 0; row<GmapUtils.TILE_SIZE; row+=1) {
+			Arrays.fill( this._pixels, start + row*width, start + row*width + GmapUtils.TILE_SIZE, 0 );
+		}
+	}
+
+	public static void main(String[] args) {
+		System.out.println("MSG -- TileMosaic -- No tests implimented here.");
+		return;
+	}
+}
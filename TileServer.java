@@ -0,0 +1,202 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+TileServer() is a local, deterministic map tile server for load testing without touching a real tile provider.<p>
+<p>
+Features:
+	- Serves generated TILE_SIZE tiles at /tile?fmt=[jpg|png]&x=..&y=..&z=.. , the same (fmt,x,y,z) is always the same image.
+	- Configurable response latency (base + random jitter).
+	- Configurable error rate, failed requests get HTTP 500.
+	- Configurable rate limit in requests/second, requests over the limit get HTTP 429.
+	- Configurable blank rate, that fraction of tiles (chosen by (x,y,z)) are one identical solid "ocean" tile.
+	- Counters for served, failed and limited requests.
+*/
+public class TileServer {
+	/**Maximum number of encoded tiles kept, so long runs over wide areas do not grow without bound.*/
+	public static int TILE_CACHE_MAX = 4096;
+	//Externally Applied Settings ==========
+	private int                 _latency_ms    = 0;
+	private int                 _jitter_ms     = 0;
+	private double              _error_rate    = 0.0;
+	private int                 _rate_limit    = 0;    //requests per second, 0 is unlimited
+	private double              _blank_rate    = 0.0;
+	private int                 _threads       = 32;
+	//Internal State Values ==========
+	private HttpServer          _server;
+	private ExecutorService     _pool;
+	private Random              _random;
+	private double              _tokens        = 0.0;
+	private long                _tokens_time   = 0;
+	private ConcurrentHashMap<String,byte[]> _tile_bytes = new ConcurrentHashMap<>();
+	private AtomicLong          _served        = new AtomicLong();
+	private AtomicLong          _failed        = new AtomicLong();
+	private AtomicLong          _limited       = new AtomicLong();
+
+	//Constructor ==========
+	/**
+	* new TileServer(long seed)
+	* <p>
+	* @param seed Seed for the latency jitter and error selection.
+	*/
+	public TileServer(long seed) {
+		this._random = new Random( seed );
+	}
+
+	//Setters ==========
+	public void setLatency(int latency_ms, int jitter_ms) { this._latency_ms = Math.max(0,latency_ms); this._jitter_ms = Math.max(0,jitter_ms); }
+	public void setErrorRate(double error_rate)           { this._error_rate = Math.max(0.0, Math.min(1.0, error_rate)); }
+	public void setRateLimit(int requests_per_sec)        { this._rate_limit = Math.max(0,requests_per_sec); }
+	public void setBlankRate(double blank_rate)           { this._blank_rate = Math.max(0.0, Math.min(1.0, blank_rate)); }
+	public void setThreads(int threads)                   { if (threads>0) { this._threads = threads; }}
+
+	/**
+	* this.start() { return (int)port; }
+	* <p>
+	* Notes:<p>
+	* 	Binds an ephemeral port on the loopback address and starts serving.<p>
+	*/
+	public int start() throws IOException {
+		this._server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+		this._pool   = Executors.newFixedThreadPool( this._threads, r -> { Thread t = new Thread(r); t.setDaemon(true); return(t); } );
+		this._server.createContext( "/tile", this::_handle );
+		this._server.setExecutor( this._pool );
+		this._tokens      = this._rate_limit;
+		this._tokens_time = System.nanoTime();
+		this._server.start();
+		return( this.getPort() );
+	}
+
+	public void stop() {
+		if (this._server != null) { this._server.stop(0); }
+		if (this._pool   != null) { this._pool.shutdownNow(); }
+	}
+
+	//Getters ==========
+	public int  getPort()    { return( this._server.getAddress().getPort() ); }
+	public long getServed()  { return( this._served.get()  ); }
+	public long getFailed()  { return( this._failed.get()  ); }
+	public long getLimited() { return( this._limited.get() ); }
+
+	/**
+	* this.source(int uid, String fmt) { return TileSource; }
+	* <p>
+	* Notes:<p>
+	* 	A TileSource pointing at this server, fmt is "jpg" or "png".<p>
+	*/
+	public TileSource source(int uid, String fmt) {
+		String prefix = String.format("http://127.0.0.1:%d/tile?fmt=%s", this.getPort(), fmt);
+		return( new TileSource( uid, fmt, prefix, "&x=", "&y=", "&z=", "" ) );
+	}
+
+	//Helpers ==========
+	private void _handle(HttpExchange ex) throws IOException {
+		try {
+			HashMap<String,String> query = _parseQuery( ex.getRequestURI().getRawQuery() );
+			int    delay;
+			double roll;
+			synchronized (this._random) {
+				delay = this._latency_ms + ((this._jitter_ms>0) ? this._random.nextInt( this._jitter_ms+1 ) : 0);
+				roll  = this._random.nextDouble();
+			}
+			if (delay > 0) { Thread.sleep( delay ); }
+			if (!this._takeToken()) {
+				this._limited.incrementAndGet();
+				ex.sendResponseHeaders( 429, -1 );
+				return;
+			}
+			if (roll < this._error_rate) {
+				this._failed.incrementAndGet();
+				ex.sendResponseHeaders( 500, -1 );
+				return;
+			}
+			String fmt  = query.getOrDefault( "fmt", "png" ).equals("jpg") ? "jpg" : "png";
+			int    x    = Integer.parseInt( query.getOrDefault( "x", "0" ) );
+			int    y    = Integer.parseInt( query.getOrDefault( "y", "0" ) );
+			int    z    = Integer.parseInt( query.getOrDefault( "z", "0" ) );
+			String key  = String.format("%s_%d_%d_%d",fmt,x,y,z);
+			byte[] body = this._tile_bytes.get( key );
+			if (body == null) {
+				body = _genTile( fmt, x, y, z, this._blank_rate );
+				if (this._tile_bytes.size() < TILE_CACHE_MAX) { this._tile_bytes.put( key, body ); }
+			}
+			ex.getResponseHeaders().set( "Content-Type", fmt.equals("jpg") ? "image/jpeg" : "image/png" );
+			ex.sendResponseHeaders( 200, body.length );
+			try (OutputStream out = ex.getResponseBody()) { out.write( body ); }
+			this._served.incrementAndGet();
+		} catch (InterruptedException|NumberFormatException e) {
+			ex.sendResponseHeaders( 400, -1 );
+		} finally {
+			ex.close();
+		}
+	}
+
+	private synchronized boolean _takeToken() {
+		if (this._rate_limit <= 0) { return( true ); }
+		long now          = System.nanoTime();
+		this._tokens      = Math.min( this._rate_limit, this._tokens + (now - this._tokens_time) * this._rate_limit / 1e9 );
+		this._tokens_time = now;
+		if (this._tokens < 1.0) { return( false ); }
+		this._tokens -= 1.0;
+		return( true );
+	}
+
+	private static HashMap<String,String> _parseQuery(String query) {
+		HashMap<String,String> out = new HashMap<>();
+		if (query == null) { return( out ); }
+		for (String pair : query.split("&")) {
+			int i = pair.indexOf('=');
+			if (i > 0) { out.put( pair.substring(0,i), pair.substring(i+1) ); }
+		}
+		return( out );
+	}
+
+	/**
+	* _genTile(String fmt, int x, int y, int z, double blank_rate) { return byte[] encoded_image; }
+	* <p>
+	* Notes:<p>
+	* 	Color is derived from (x,y,z) only, with a grid border and the tile index drawn on top.<p>
+	* 	About blank_rate of the tiles are instead a plain solid color, byte-identical to each other.<p>
+	*/
+	private static byte[] _genTile(String fmt, int x, int y, int z, double blank_rate) {
+		int           size = GmapUtils.TILE_SIZE;
+		int           hash = (x * 73856093) ^ (y * 19349663) ^ (z * 83492791);
+		boolean       fill = (((hash >>> 8) & 0xFFFF) / 65536.0) < blank_rate;
+		BufferedImage img  = new BufferedImage( size, size, BufferedImage.TYPE_INT_RGB ); //jpg writer does not accept alpha
+		Graphics      g    = img.getGraphics();
+		              g.setColor( fill ? new Color( 0x1A3C6E ) : new Color( hash & 0xFFFFFF ) );
+		              g.fillRect( 0, 0, size, size );
+		if (!fill) {
+		              g.setColor( Color.WHITE );
+		              g.drawRect( 0, 0, size-1, size-1 );
+		              g.drawString( String.format("%d/%d/%d", z, x, y), 8, 16 );
+		}
+		              g.dispose();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			ImageIO.write( img, fmt.equals("jpg") ? "jpeg" : "png", out );
+		} catch (IOException e) {
+			throw new IllegalStateException("ERR -- TileServer._genTile -- Unable to encode tile  " + e.getMessage());
+		}
+		return( out.toByteArray() );
+	}
+
+	public static void main(String[] args) {
+		System.out.println("MSG -- TileServer -- No tests implimented here.");
+		return;
+	}
+}
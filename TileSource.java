@@ -0,0 +1,52 @@
+/**
+TileSource() describes one map tile source, the same fields as a "sources" entry in sources.json.<p>
+<p>
+Tile urls are built as: prefix + x + tile_x + y + tile_y + zoom + tile_zoom + postfix
+*/
+public class TileSource {
+	private final int    _uid;
+	private final String _ext;
+	private final String _prefix;
+	private final String _x;
+	private final String _y;
+	private final String _zoom;
+	private final String _postfix;
+
+	//Constructor ==========
+	/**
+	* new TileSource(int uid, String ext, String prefix, String x, String y, String zoom, String postfix)
+	* <p>
+	* @param uid     Source id, used to name downloaded tile files.
+	* @param ext     Tile file extension without the dot, ie: "jpg" or "png".
+	* @param prefix  Url text before the x value.
+	* @param x       Url text placed before the tile x value.
+	* @param y       Url text placed before the tile y value.
+	* @param zoom    Url text placed before the tile zoom value.
+	* @param postfix Url text appended after the zoom value.
+	*/
+	public TileSource(int uid, String ext, String prefix, String x, String y, String zoom, String postfix) {
+		this._uid     = uid;
+		this._ext     = new String(ext);
+		this._prefix  = new String(prefix);
+		this._x       = new String(x);
+		this._y       = new String(y);
+		this._zoom    = new String(zoom);
+		this._postfix = new String(postfix);
+	}
+
+	//Getters ==========
+	public int    getUid() { return( this._uid ); }
+	public String getExt() { return( this._ext ); }
+
+	/**
+	* this.genUrl(int x, int y, int zoom) { return String url; }
+	*/
+	public String genUrl(int x, int y, int zoom) {
+		return( this._prefix + this._x + x + this._y + y + this._zoom + zoom + this._postfix );
+	}
+
+	public static void main(String[] args) {
+		System.out.println("MSG -- TileSource -- No tests implimented here.");
+		return;
+	}
+}
@@ -1,7 +1,9 @@
 import java.lang.Math;
+import java.util.Arrays;
 
 public class UnitTestGmapUtils {
 	public static void main(String[] args) {
+		testProjection(); //explicit checks, runs with or without -ea
 		testConversions();
 	}
 	
@@ -38,4 +40,50 @@ public class UnitTestGmapUtils {
 		}
 		System.out.format("MSG -- Tests Completed Successfully%n");
 	}
+	
+	public static void testProjection() {
+		double[] COORD_A = {41.85,-87.649999};
+		double[] LONS    = {-179.99, -87.649999, 0.0, 13.4, 151.2};
+		System.out.format("MSG -- Fast latitude error (normalized, px at zoom %d): (%.3e, %.4f)%n", GmapProjection.MAX_ZOOM, GmapProjection.FAST_ERR, GmapProjection.FAST_ERR*GmapProjection.maxAbspx(GmapProjection.MAX_ZOOM));
+		long     points  = 0;
+		for (int zoom = 0; zoom<=GmapProjection.MAX_ZOOM; zoom+=1) {
+			for (double lat = -85.0; lat<=85.0; lat+=0.173) {
+				for (double lon : LONS) {
+					long[] exact  = GmapProjection.latlon2abspx(zoom,lat,lon);
+					long[] bulk_x = new long[1];
+					long[] bulk_y = new long[1];
+					GmapProjection.latlon2abspx(zoom, new double[]{lat}, new double[]{lon}, bulk_x, bulk_y);
+					//Bulk (fast when usable) path is at most 1 pixel from the exact 64-bit path
+					_check( (Math.abs(bulk_x[0]-exact[0])<=1)&&(Math.abs(bulk_y[0]-exact[1])<=1), String.format("bulk pixel off by more than 1 at zoom %d (%.3f,%.3f)", zoom, lat, lon) );
+					if (zoom <= GmapUtils.MAX_ZOOM) {
+						//64-bit exact path matches the int path, the bulk pixel maps back within the pixel error margin
+						int[]    abspx = GmapUtils.latlon2abspx(zoom,lat,lon);
+						_check( (abspx[0]==exact[0])&&(abspx[1]==exact[1]), String.format("64-bit exact pixel differs from GmapUtils at zoom %d (%.3f,%.3f)", zoom, lat, lon) );
+						double[] err   = GmapUtils.abspx2latlonErrMargin(zoom,abspx[0],abspx[1]);
+						double[] back  = GmapProjection.abspx2latlon(zoom,bulk_x[0],bulk_y[0]);
+						_check( (Math.abs(lat-back[0])<err[0])&&(Math.abs(lon-back[1])<err[1]), String.format("bulk pixel outside error margin at zoom %d (%.3f,%.3f)", zoom, lat, lon) );
+					}
+					points += 1;
+				}
+			}
+		}
+		System.out.format("MSG -- %d points checked over zoom 0-%d%n", points, GmapProjection.MAX_ZOOM);
+		//Deep zoom pixels are the zoom 20 pixels, shifted
+		long[] px20 = GmapProjection.latlon2abspx(20,COORD_A[0],COORD_A[1]);
+		long[] px30 = GmapProjection.latlon2abspx(30,COORD_A[0],COORD_A[1]);
+		_check( ((px30[0]>>10)==px20[0])&&((px30[1]>>10)==px20[1]), "zoom 30 pixels are zoom 20 pixels shifted" );
+		//Tile range and zoom search match GmapUtils where both apply
+		double[] a = {41.841,-87.662};
+		double[] b = {41.859,-87.638};
+		int[]    t = GmapProjection.tileBounds(16,a,b);
+		int[]    u = GmapUtils.tileBounds(16,a,b);
+		_check( Arrays.equals(t,u), "tile bounds match GmapUtils" );
+		_check( GmapProjection.zoomFromCoords(new int[]{1020,1020},a,b,COORD_A,GmapUtils.MAX_ZOOM)==GmapUtils.zoomFromCoords(new int[]{1020,1020},a,b,COORD_A), "zoom search matches GmapUtils" );
+		System.out.format("MSG -- Zoom 30 pixel: (%d,%d)%n", px30[0], px30[1]);
+		System.out.format("MSG -- Projection Tests Completed Successfully%n");
+	}
+	
+	private static void _check(boolean ok, String msg) {
+		if (!ok) { throw new AssertionError("ERR -- UnitTestGmapUtils -- " + msg); }
+	}
 }
@@ -0,0 +1,129 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class UnitTestRasterBudget {
+	public static void main(String[] args) throws Exception {
+		testReserveRelease();
+		testTimeout();
+		testCancel();
+		testPool();
+		testKept();
+		System.out.format("MSG -- RasterBudget Tests Completed Successfully%n");
+	}
+
+	/**Reservations add up to the limit, a waiting one goes through once another is released.*/
+	public static void testReserveRelease() throws Exception {
+		RasterBudget.setLimit( 1000 );
+		_check( RasterBudget.reserve( 600, 0 ), "first reservation fits" );
+		_check( !RasterBudget.reserve( 1001, 1000 ), "larger than the limit refused at once" );
+		CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync( () -> RasterBudget.reserve( 600, 5000 ) );
+		Thread.sleep( 100 );
+		_check( !waiting.isDone(), "second reservation waits" );
+		RasterBudget.release( 600 );
+		_check( waiting.get( 5, TimeUnit.SECONDS ), "waiting reservation made after release" );
+		_check( RasterBudget.getReserved()==600, "reserved bytes tracked" );
+		RasterBudget.release( 600 );
+		_check( RasterBudget.getReserved()==0, "all released" );
+	}
+
+	/**A reservation that never fits is refused once its timeout passes.*/
+	public static void testTimeout() {
+		RasterBudget.setLimit( 1000 );
+		RasterBudget.reserve( 800, 0 );
+		long start = System.nanoTime();
+		_check( !RasterBudget.reserve( 400, 150 ), "refused after timeout" );
+		long waited_ms = (System.nanoTime() - start) / 1000000L;
+		_check( (waited_ms>=100)&&(waited_ms<3000), "waited about the timeout, " + waited_ms + "ms" );
+		RasterBudget.release( 800 );
+	}
+
+	/**A waiting reservation throws CancellationException once stopped and woken.*/
+	public static void testCancel() throws Exception {
+		RasterBudget.setLimit( 1000 );
+		RasterBudget.reserve( 800, 0 );
+		AtomicBoolean              stop    = new AtomicBoolean( false );
+		CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync( () -> RasterBudget.reserve( 400, 60000, stop::get ) );
+		Thread.sleep( 100 );
+		long start = System.nanoTime();
+		stop.set( true );
+		RasterBudget.wake();
+		try {
+			waiting.get( 5, TimeUnit.SECONDS );
+			_check( false, "cancelled reservation was made" );
+		} catch (ExecutionException e) {
+			_check( e.getCause() instanceof CancellationException, "cancelled with CancellationException" );
+		}
+		_check( (System.nanoTime() - start) < 2000000000L, "cancel did not wait for the timeout" );
+		_check( RasterBudget.getReserved()==800, "cancelled reservation holds nothing" );
+		RasterBudget.release( 800 );
+	}
+
+	/**Recycled buffers are reused for the same size, and dropped when a reservation needs their room.*/
+	public static void testPool() {
+		RasterBudget.setLimit( RasterBudget.bytes( 100, 100 ) * 2 );
+		RasterBudget.reserve( RasterBudget.bytes( 100, 100 ), 0 );
+		BufferedImage img = RasterBudget.image( 100, 100 );
+		int[]         buf = ((DataBufferInt)img.getRaster().getDataBuffer()).getData();
+		img.setRGB( 5, 5, 0xFF00FF00 );
+		RasterBudget.recycle( img );
+		RasterBudget.release( RasterBudget.bytes( 100, 100 ) );
+		_check( RasterBudget.getPooled()==RasterBudget.bytes( 100, 100 ), "recycled buffer pooled" );
+		BufferedImage again = RasterBudget.image( 100, 100 );
+		_check( ((DataBufferInt)again.getRaster().getDataBuffer()).getData()==buf, "same size reuses the buffer" );
+		_check( again.getRGB( 5, 5 )==0, "reused buffer cleared" );
+		RasterBudget.recycle( again );
+		_check( RasterBudget.reserve( RasterBudget.bytes( 100, 100 ) * 2, 0 ), "pooled buffer dropped to make room" );
+		_check( RasterBudget.getPooled()==0, "pool drained" );
+		RasterBudget.release( RasterBudget.bytes( 100, 100 ) * 2 );
+	}
+
+	/**Kept rasters and cache bytes count against the budget until recycled or dropped.*/
+	public static void testKept() throws Exception {
+		long size = RasterBudget.bytes( 100, 100 );
+		RasterBudget.setLimit( size * 2 );
+		RasterBudget.reserve( size, 0 );
+		BufferedImage img = RasterBudget.image( 100, 100 );
+		RasterBudget.keep( img ); //moves the reservation to kept, nothing is left to release
+		_check( (RasterBudget.getReserved()==0)&&(RasterBudget.getKept()==size), "keep moves the bytes from reserved to kept" );
+		_check( !RasterBudget.reserve( size * 2, 0 ), "kept raster takes budget" );
+		_check( RasterBudget.tryKeep( size )&&(!RasterBudget.tryKeep( 1 )), "cache bytes kept only while they fit" );
+		RasterBudget.drop( size );
+		CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync( () -> RasterBudget.reserve( size * 2, 5000 ) );
+		Thread.sleep( 100 );
+		_check( !waiting.isDone(), "reservation waits for the kept raster" );
+		RasterBudget.recycle( img );
+		_check( waiting.get( 5, TimeUnit.SECONDS ), "recycling the kept raster lets the waiting reservation through" );
+		_check( RasterBudget.getKept()==0, "recycle and drop stop counting" );
+		RasterBudget.release( size * 2 );
+		//Giving back more than was taken is a caller bug, it throws instead of being ignored
+		_check( _fails( () -> RasterBudget.release( 1 ) ), "release past the reservation throws" );
+		_check( _fails( () -> RasterBudget.drop( 1 ) ), "drop past the kept bytes throws" );
+		_check( _fails( () -> RasterBudget.keep( RasterBudget.image( 10, 10 ) ) ), "keep without a reservation throws" );
+		RasterBudget.reserve( RasterBudget.bytes( 10, 10 ) * 2, 0 );
+		BufferedImage twice = RasterBudget.image( 10, 10 );
+		RasterBudget.keep( twice );
+		_check( _fails( () -> RasterBudget.keep( twice ) ), "keeping an image twice throws" );
+		RasterBudget.recycle( twice );
+		RasterBudget.release( RasterBudget.bytes( 10, 10 ) );
+		_check( (RasterBudget.getReserved()==0)&&(RasterBudget.getKept()==0), "all given back" );
+		RasterBudget.setLimit( Runtime.getRuntime().maxMemory() / 2 );
+	}
+
+	private static boolean _fails(Runnable call) {
+		try {
+			call.run();
+			return( false );
+		} catch (IllegalStateException e) {
+			return( true );
+		}
+	}
+
+	private static void _check(boolean ok, String msg) {
+		if (!ok) { throw new AssertionError("ERR -- UnitTestRasterBudget -- " + msg); }
+	}
+}
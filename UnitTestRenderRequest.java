@@ -0,0 +1,87 @@
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class UnitTestRenderRequest {
+	public static void main(String[] args) throws Exception {
+		testValidation();
+		testCopies();
+		testAsyncFailure();
+		System.out.format("MSG -- RenderRequest Tests Completed Successfully%n");
+	}
+
+	/**Requests that cannot describe a render are refused when built.*/
+	public static void testValidation() {
+		_check( _refused( () -> new RenderRequest( 0, 100, _coords( 41.85,-87.65 ), 1.0, 0.0, _sources() ) ), "zero width refused" );
+		_check( _refused( () -> new RenderRequest( 100, -1, _coords( 41.85,-87.65 ), 1.0, 0.0, _sources() ) ), "negative height refused" );
+		_check( _refused( () -> new RenderRequest( 100, 100, new ArrayList<double[]>(), 1.0, 0.0, _sources() ) ), "no coordinates refused" );
+		_check( _refused( () -> new RenderRequest( 100, 100, null, 1.0, 0.0, _sources() ) ), "null coordinates refused" );
+		_check( _refused( () -> new RenderRequest( 100, 100, _coords( 41.85,-87.65 ), 1.0, 0.0, new ArrayList<TileSource>() ) ), "no sources refused" );
+		RenderRequest req = new RenderRequest( 100, 100, _coords( 41.85,-87.65 ), 1.0, 0.0, _sources() );
+		_check( _refused( () -> req.withRetryPeriod( -1 ) ), "negative retry period refused" );
+		_check( _refused( () -> req.withUserAgent( null ) ), "null user agent refused" );
+	}
+
+	/**Arrays passed in or handed out are copies, with...(...) leaves the original unchanged.*/
+	public static void testCopies() {
+		ArrayList<double[]> coords = _coords( 41.85,-87.65 );
+		RenderRequest       req    = new RenderRequest( 320, 240, coords, 2.0, 10.0, _sources() );
+		coords.get(0)[0] = 0.0;
+		_check( req.getCoords().get(0)[0]==41.85, "caller array change not seen" );
+		req.getCoords().get(0)[0] = 0.0;
+		req.getSources().clear();
+		_check( (req.getCoords().get(0)[0]==41.85)&&(req.getSources().size()==1), "getters return copies" );
+		RenderRequest turned = req.withHeading( 90.0 );
+		RenderRequest moved  = req.withTempDir( "" );
+		RenderRequest icon   = req.withCompass( new int[]{32,32}, new int[]{5,5}, "compass.png" );
+		_check( (req.getHeading()==10.0)&&(turned.getHeading()==90.0), "withHeading copies" );
+		_check( (turned.getWidth()==320)&&(turned.getHeight()==240)&&(turned.getRadiusKm()==2.0), "copy keeps the other values" );
+		_check( moved.getTempDir().equals("."), "empty temp dir defaults to ." );
+		_check( req.getCompassIcon().equals("")&&icon.getCompassIcon().equals("compass.png"), "withCompass copies" );
+		RenderRequest agent  = req.withRetryPeriod( 30 ).withUserAgent( "gmap-test/1.0" );
+		_check( (req.getRetryPeriod()==900)&&req.getUserAgent().equals("Mozilla/5.0"), "retry period and user agent default as in GmapRender" );
+		_check( (agent.getRetryPeriod()==30)&&agent.getUserAgent().equals("gmap-test/1.0")&&(agent.getHeading()==10.0), "withRetryPeriod and withUserAgent copy" );
+		int[] size = icon.getCompassSize();
+		size[0] = 1;
+		_check( icon.getCompassSize()[0]==32, "compass size is a copy" );
+	}
+
+	/**A request GmapRender cannot render fails its future instead of throwing from renderAsync(...).*/
+	public static void testAsyncFailure() throws Exception {
+		RenderRequest pole = new RenderRequest( 320, 240, _coords( 89.0, 0.0 ), 1.0, 0.0, _sources() ).withTempDir( System.getProperty("java.io.tmpdir") );
+		CompletableFuture<BufferedImage> result = GmapRender.renderAsync( pole, 0 );
+		try {
+			result.get( 10, TimeUnit.SECONDS );
+			_check( false, "render at latitude 89 completed" );
+		} catch (ExecutionException e) {
+			System.out.format("MSG -- Latitude 89 failed the future: %s%n", e.getCause().getClass().getSimpleName());
+		}
+	}
+
+	private static boolean _refused(Runnable build) {
+		try {
+			build.run();
+			return( false );
+		} catch (IllegalArgumentException e) {
+			return( true );
+		}
+	}
+
+	private static ArrayList<double[]> _coords(double lat, double lon) {
+		ArrayList<double[]> coords = new ArrayList<>();
+		coords.add( new double[]{lat,lon} );
+		return( coords );
+	}
+
+	private static ArrayList<TileSource> _sources() {
+		ArrayList<TileSource> sources = new ArrayList<>();
+		sources.add( new TileSource( 0, "png", "http://127.0.0.1:9/", "", "", "", "" ) );
+		return( sources );
+	}
+
+	private static void _check(boolean ok, String msg) {
+		if (!ok) { throw new AssertionError("ERR -- UnitTestRenderRequest -- " + msg); }
+	}
+}
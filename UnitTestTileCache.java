@@ -0,0 +1,91 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+public class UnitTestTileCache {
+	public static void main(String[] args) throws IOException {
+		File dir = Files.createTempDirectory( "gmap_tilecache" ).toFile();
+		try {
+			testDedup( dir );
+			testLegacyAndClean( dir );
+			testConcurrentPut( dir );
+		} finally {
+			_deleteTree( dir );
+		}
+		System.out.format("MSG -- TileCache Tests Completed Successfully%n");
+	}
+
+	/**Identical tiles share one blob and one key, different tiles do not.*/
+	public static void testDedup(File dir) throws IOException {
+		byte[] blank = "blank tile".getBytes();
+		String a     = new File( dir, "1_0_0_3.png" ).getPath();
+		String b     = new File( dir, "1_1_0_3.png" ).getPath();
+		String c     = new File( dir, "1_2_0_3.png" ).getPath();
+		_check( TileCache.lookup( a )==null, "missing tile has no key" );
+		TileCache.put( a, blank );
+		TileCache.put( b, blank );
+		TileCache.put( c, "land tile".getBytes() );
+		_check( _blobs( dir )==2, "identical tiles stored as one blob, got " + _blobs( dir ) );
+		_check( TileCache.lookup( a ).equals( TileCache.lookup( b ) ), "identical tiles share a key" );
+		_check( !TileCache.lookup( a ).equals( TileCache.lookup( c ) ), "different tiles have different keys" );
+		_check( new String( Files.readAllBytes( new File( b ).toPath() ) ).equals("blank tile"), "tile file readable directly" );
+		_check( ((Integer)Files.getAttribute( TileCache.blobFile( a, TileCache.hash( blank ) ).toPath(), "unix:nlink" ))==3, "blob hard linked by both tiles" );
+		_check( !new File( a + ".ref" ).exists(), "no per-tile reference file" );
+	}
+
+	/**A plain tile is moved into a blob on lookup, and blobs nobody links to are cleaned.*/
+	public static void testLegacyAndClean(File dir) throws IOException {
+		String plain = new File( dir, "1_3_0_3.png" ).getPath();
+		Files.write( new File( plain ).toPath(), "blank tile".getBytes() );
+		int    before = _blobs( dir );
+		_check( TileCache.lookup( plain ).equals( TileCache.lookup( new File( dir, "1_0_0_3.png" ).getPath() ) ), "plain tile adopted into the existing blob" );
+		_check( _blobs( dir )==before, "adopting a duplicate adds no blob" );
+		//Replacing a tile drops its old blob if nothing else links to it
+		String c = new File( dir, "1_2_0_3.png" ).getPath();
+		TileCache.put( c, "new land tile".getBytes() );
+		_check( !TileCache.blobFile( c, TileCache.hash( "land tile".getBytes() ) ).exists(), "replaced tile's orphan blob deleted" );
+		//Deleted tiles leave orphans for clean(...)
+		new File( c ).delete();
+		_check( TileCache.clean( dir.getPath() )==1, "clean deletes the orphan blob" );
+		_check( TileCache.clean( dir.getPath() )==0, "clean keeps linked blobs" );
+		_check( TileCache.lookup( new File( dir, "1_1_0_3.png" ).getPath() )!=null, "linked tiles survive clean" );
+	}
+
+	/**Tiles with the same new content stored at once all link to one blob.*/
+	public static void testConcurrentPut(File dir) throws IOException {
+		byte[]                 data    = "ocean tile".getBytes();
+		ArrayList<Thread>      threads = new ArrayList<>();
+		ArrayList<IOException> errors  = new ArrayList<>();
+		for (int i = 0; i<16; i+=1) {
+			String tile = new File( dir, "2_" + i + "_0_5.png" ).getPath();
+			threads.add( new Thread( () -> {
+				try { TileCache.put( tile, data ); } catch (IOException e) { synchronized (errors) { errors.add( e ); } }
+			}));
+		}
+		for (Thread t : threads) { t.start(); }
+		for (Thread t : threads) { try { t.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); } }
+		_check( errors.isEmpty(), "concurrent puts succeed" );
+		String key = TileCache.lookup( new File( dir, "2_0_0_5.png" ).getPath() );
+		for (int i = 1; i<16; i+=1) {
+			_check( key.equals( TileCache.lookup( new File( dir, "2_" + i + "_0_5.png" ).getPath() ) ), "tile " + i + " shares the blob" );
+		}
+		_check( ((Integer)Files.getAttribute( TileCache.blobFile( new File( dir, "2_0_0_5.png" ).getPath(), TileCache.hash( data ) ).toPath(), "unix:nlink" ))==17,
+		        "blob linked by all 16 tiles" );
+	}
+
+	private static int _blobs(File dir) {
+		File[] files = new File( dir, TileCache.BLOB_DIR ).listFiles();
+		return( (files == null) ? 0 : files.length );
+	}
+
+	private static void _deleteTree(File fd) {
+		File[] files = fd.listFiles();
+		if (files != null) { for (File f : files) { _deleteTree( f ); } }
+		fd.delete();
+	}
+
+	private static void _check(boolean ok, String msg) {
+		if (!ok) { throw new AssertionError("ERR -- UnitTestTileCache -- " + msg); }
+	}
+}
@@ -0,0 +1,76 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UnitTestTileFlight {
+	public static void main(String[] args) throws Exception {
+		testSharedLoad();
+		testFailureTtl();
+		testSweep();
+		System.out.format("MSG -- TileFlight Tests Completed Successfully%n");
+	}
+
+	/**Callers arriving while a load runs wait on it instead of loading again.*/
+	public static void testSharedLoad() throws Exception {
+		TileFlight<String>  flight  = new TileFlight<>(0);
+		AtomicInteger       loads   = new AtomicInteger();
+		CountDownLatch      started = new CountDownLatch(1);
+		CountDownLatch      release = new CountDownLatch(1);
+		CompletableFuture<String> first = CompletableFuture.supplyAsync( () -> flight.fetch( "t", () -> {
+			loads.incrementAndGet();
+			started.countDown();
+			release.await();
+			return( "tile" );
+		}).join() );
+		started.await();
+		ArrayList<CompletableFuture<String>> waiters = new ArrayList<>();
+		for (int i = 0; i<8; i+=1) {
+			waiters.add( flight.fetch( "t", () -> { loads.incrementAndGet(); return( "again" ); } ) );
+		}
+		_check( flight.inFlight()==1, "one key in flight while loading" );
+		release.countDown();
+		_check( first.get().equals("tile"), "loader result returned" );
+		for (CompletableFuture<String> w : waiters) { _check( w.get().equals("tile"), "waiter shares the loader result" ); }
+		_check( loads.get()==1, "loader ran once, got " + loads.get() );
+		_check( flight.inFlight()==0, "key released after success" );
+		System.out.format("MSG -- 9 callers, %d load%n", loads.get());
+	}
+
+	/**A failure is handed out until its TTL passes, then the loader runs again.*/
+	public static void testFailureTtl() throws Exception {
+		TileFlight<String> flight = new TileFlight<>(200);
+		AtomicInteger      loads  = new AtomicInteger();
+		CompletableFuture<String> a = flight.fetch( "t", () -> { loads.incrementAndGet(); throw new IOException("down"); } );
+		CompletableFuture<String> b = flight.fetch( "t", () -> { loads.incrementAndGet(); return( "tile" ); } );
+		_check( a.isCompletedExceptionally()&&b.isCompletedExceptionally(), "failure cached within TTL" );
+		_check( loads.get()==1, "no retry within TTL" );
+		Thread.sleep( 250 );
+		CompletableFuture<String> c = flight.fetch( "t", () -> { loads.incrementAndGet(); return( "tile" ); } );
+		_check( c.get().equals("tile")&&(loads.get()==2), "retried after TTL" );
+		//TTL 0 never caches a failure
+		TileFlight<String> none = new TileFlight<>(0);
+		none.fetch( "t", () -> { throw new IOException("down"); } );
+		_check( none.inFlight()==0, "TTL 0 releases the key on failure" );
+		_check( none.fetch( "t", () -> "tile" ).get().equals("tile"), "TTL 0 retries at once" );
+	}
+
+	/**Expired failures are removed by a fetch of any key, not only their own.*/
+	public static void testSweep() throws Exception {
+		TileFlight.SWEEP_MS = 50;
+		TileFlight<String> flight = new TileFlight<>(0);
+		for (int i = 0; i<20; i+=1) {
+			flight.fetch( "bad" + i, () -> { throw new IOException("down"); }, 100 );
+		}
+		_check( flight.inFlight()==20, "failures kept within TTL" );
+		Thread.sleep( 150 );
+		_check( flight.fetch( "other", () -> "tile" ).get().equals("tile"), "other key loaded" );
+		_check( flight.inFlight()==0, "expired failures swept, " + flight.inFlight() + " left" );
+		TileFlight.SWEEP_MS = 1000;
+	}
+
+	private static void _check(boolean ok, String msg) {
+		if (!ok) { throw new AssertionError("ERR -- UnitTestTileFlight -- " + msg); }
+	}
+}
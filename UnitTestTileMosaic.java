@@ -0,0 +1,71 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+public class UnitTestTileMosaic {
+	public static void main(String[] args) {
+		testPan();
+		testZoomAndGrow();
+		System.out.format("MSG -- TileMosaic Tests Completed Successfully%n");
+	}
+
+	/**Tiles kept across a pan keep their pixels, newly exposed cells are undrawn and transparent.*/
+	public static void testPan() {
+		int        ts     = GmapUtils.TILE_SIZE;
+		TileMosaic mosaic = new TileMosaic(1);
+		mosaic.moveTo( 10,12, 20,21, 5 ); //3x2 view in a 5x4 window
+		_check( (mosaic.getX()==9)&&(mosaic.getY()==19), "window centered on the view" );
+		for (int x = 10; x<=12; x+=1) {
+			for (int y = 20; y<=21; y+=1) { mosaic.draw( x,y, _tile( x*100 + y ) ); }
+		}
+		_check( mosaic.has( 11,20,5 )&&(!mosaic.has( 9,20,5 ))&&(!mosaic.has( 11,20,6 )), "drawn cells tracked per zoom" );
+		//Pan inside the window, nothing moves
+		mosaic.moveTo( 11,13, 20,21, 5 );
+		_check( (mosaic.getX()==9)&&mosaic.has( 12,21,5 ), "pan inside window keeps the raster" );
+		//Pan out of the window by 3 columns and 1 row, the window is shifted to re-center
+		mosaic.moveTo( 12,14, 19,20, 5 );
+		_check( (mosaic.getX()==11)&&(mosaic.getY()==18), "window re-centered after leaving it" );
+		_check( mosaic.has( 12,20,5 )&&mosaic.has( 12,21,5 ), "tiles still in the window kept" );
+		_check( (!mosaic.has( 10,20,5 ))&&(!mosaic.has( 14,19,5 )), "tiles outside or exposed are undrawn" );
+		BufferedImage img = mosaic.getImage();
+		_check( img.getRGB( (12-11)*ts + 7, (21-18)*ts + 9 )==_color( 1221 ), "kept tile pixels moved with the window" );
+		_check( img.getRGB( (14-11)*ts + 7, (19-18)*ts + 9 )==0, "exposed cell cleared" );
+		_check( img.getRGB( (13-11)*ts + 7, (21-18)*ts + 9 )==0, "cell exposed across the row wrap cleared" );
+		//Far pan, nothing survives
+		mosaic.moveTo( 100,102, 19,20, 5 );
+		_check( !mosaic.has( 100,19,5 )&&(mosaic.getImage().getRGB( 3*ts/2, 3*ts/2 )==0), "far pan starts empty" );
+		mosaic.release();
+	}
+
+	/**A zoom change starts over in the same raster, a larger view replaces it.*/
+	public static void testZoomAndGrow() {
+		TileMosaic mosaic = new TileMosaic(0);
+		mosaic.moveTo( 0,1, 0,1, 3 );
+		mosaic.draw( 0,0, _tile( 1 ) );
+		BufferedImage img = mosaic.getImage();
+		_check( mosaic.bytesToFit( 0,1, 0,1, 4 )==0, "same size reuses the raster" );
+		mosaic.moveTo( 0,1, 0,1, 4 );
+		_check( (mosaic.getImage()==img)&&(!mosaic.has( 0,0,3 ))&&(img.getRGB( 5,5 )==0), "zoom change clears the raster" );
+		_check( mosaic.bytesToFit( 0,2, 0,1, 4 )==RasterBudget.bytes( 3*GmapUtils.TILE_SIZE, 2*GmapUtils.TILE_SIZE ), "growth size reported" );
+		mosaic.moveTo( 0,2, 0,1, 4 );
+		_check( mosaic.getImage().getWidth()==3*GmapUtils.TILE_SIZE, "larger view gets a larger raster" );
+		mosaic.draw( 50,50, _tile( 2 ) ); //outside the window, ignored
+		_check( !mosaic.has( 50,50,4 ), "draw outside the window ignored" );
+		mosaic.release();
+		_check( mosaic.getImage()==null, "release drops the raster" );
+	}
+
+	private static int _color(int id) { return( new Color( id*7919 & 0xFFFFFF ).getRGB() ); }
+
+	private static BufferedImage _tile(int id) {
+		BufferedImage tile = new BufferedImage( GmapUtils.TILE_SIZE, GmapUtils.TILE_SIZE, BufferedImage.TYPE_INT_ARGB );
+		Graphics      g    = tile.getGraphics();
+		g.setColor( new Color( _color( id ), true ) );
+		g.fillRect( 0, 0, GmapUtils.TILE_SIZE, GmapUtils.TILE_SIZE );
+		return( tile );
+	}
+
+	private static void _check(boolean ok, String msg) {
+		if (!ok) { throw new AssertionError("ERR -- UnitTestTileMosaic -- " + msg); }
+	}
+}